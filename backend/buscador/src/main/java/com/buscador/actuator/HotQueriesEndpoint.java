@@ -0,0 +1,33 @@
+package com.buscador.actuator;
+
+import com.buscador.service.HotQueryTracker;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/hotqueries — consultas y prefijos más frecuentes de esta réplica.
+ * Contiene texto de los usuarios: no se expone por web salvo que se pida (ver application.yml).
+ */
+@Component
+@Endpoint(id = "hotqueries")
+public class HotQueriesEndpoint {
+
+    private final HotQueryTracker tracker;
+
+    public HotQueriesEndpoint(HotQueryTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotQueries(@Nullable Integer limit) {
+        int n = limit == null ? 20 : limit;
+        return Map.of(
+                "searches", tracker.topSearches(n),
+                "prefixes", tracker.topPrefixes(n)
+        );
+    }
+}
@@ -1,23 +1,89 @@
 package com.buscador.bootstrap;
 
-import com.buscador.service.IndexService;
+import com.buscador.config.IndexInitializer;
+import com.buscador.service.ReindexJob;
+import com.buscador.service.ReindexJobService;
+import com.buscador.service.ReindexLease;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * Arranque del índice en segundo plano: crea el índice si falta y hace la carga
+ * inicial desde el Operador. El contexto de Spring termina de levantar sin
+ * esperar a Elasticsearch; la réplica pasa a "ready" en cuanto el índice es usable,
+ * es decir, existe y tiene documentos.
+ * La carga inicial sólo la lanza la réplica que consigue el lease de líder, como un job
+ * más de {@link ReindexJobService} (aparece en el historial y se puede seguir su avance).
+ * Sólo se la espera si el índice está vacío; si ya tiene datos corre de fondo.
+ */
 @Component
 public class DataLoader implements CommandLineRunner {
 
-    private final IndexService indexService;
+    private static final long INITIAL_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30000;
 
-    public DataLoader(IndexService indexService) {
-        this.indexService = indexService;
+    private final ReindexJobService jobs;
+    private final IndexInitializer indexInitializer;
+    private final IndexReadinessHealthIndicator readiness;
+    private final ReindexLease lease;
+
+    public DataLoader(ReindexJobService jobs,
+                      IndexInitializer indexInitializer,
+                      IndexReadinessHealthIndicator readiness,
+                      ReindexLease lease) {
+        this.jobs = jobs;
+        this.indexInitializer = indexInitializer;
+        this.readiness = readiness;
+        this.lease = lease;
     }
 
     @Override
     public void run(String... args) {
-        System.out.println("📦 Indexando productos automáticamente...");
-        int total = indexService.reindexAll();
-        System.out.println("✅ Productos indexados: " + total);
+        Thread t = new Thread(this::bootstrap, "index-bootstrap");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void bootstrap() {
+        long backoff = INITIAL_BACKOFF_MS;
+        while (!readiness.isReady()) {
+            try {
+                if (!indexInitializer.ensureIndex()) {
+                    readiness.recordAttempt("Elasticsearch no disponible");
+                } else {
+                    boolean hasDocuments = indexInitializer.countDocuments() > 0;
+                    int total = 0;
+                    if (lease.tryAcquireOrRenew()) {
+                        System.out.println("📦 Indexando productos automáticamente...");
+                        ReindexJob job = jobs.submit(ReindexJob.Trigger.BOOTSTRAP, true).job();
+                        if (hasDocuments) {
+                            // el índice ya sirve: se lo pone al día de fondo (el job loguea al terminar)
+                            readiness.markReady();
+                            return;
+                        }
+                        total = job.await().indexed();
+                        System.out.println("✅ Productos indexados: " + total);
+                    }
+                    // réplica no líder: sirve en cuanto el líder dejó datos en el índice
+                    if (total > 0 || hasDocuments) {
+                        readiness.markReady();
+                        return;
+                    }
+                    readiness.recordAttempt("Índice vacío, esperando la carga del líder");
+                }
+            } catch (Exception e) {
+                readiness.recordAttempt(e.getMessage());
+                System.err.println("❌ Error en el arranque del índice: " + e.getMessage());
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
     }
 }
@@ -0,0 +1,47 @@
+package com.buscador.bootstrap;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Estado del arranque del índice. Forma parte del grupo de salud "readiness"
+ * (/actuator/health/readiness), así la plataforma no manda tráfico a la réplica
+ * hasta que el índice existe y tiene documentos.
+ */
+@Component
+public class IndexReadinessHealthIndicator implements HealthIndicator {
+
+    private volatile boolean ready = false;
+    private volatile long readyAfterMs = -1;
+    private volatile int attempts = 0;
+    private volatile String lastError;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void recordAttempt(String error) {
+        attempts++;
+        lastError = error;
+    }
+
+    void markReady() {
+        // uptime de la JVM = tiempo desde que arrancó el proceso hasta poder servir búsquedas
+        readyAfterMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        lastError = null;
+        ready = true;
+        System.out.println("⏱️ Índice listo para búsquedas " + readyAfterMs + " ms después del arranque de la JVM.");
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = ready ? Health.up() : Health.outOfService();
+        builder.withDetail("attempts", attempts);
+        if (ready) builder.withDetail("readyAfterMs", readyAfterMs);
+        if (lastError != null) builder.withDetail("lastError", lastError);
+        return builder.build();
+    }
+}
@@ -1,12 +1,13 @@
 package com.buscador.config;
 
-import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Map;
+
 @Component
 public class IndexInitializer {
 
@@ -24,27 +25,30 @@ public class IndexInitializer {
         this.elasticRest = elasticRest;
     }
 
-    @PostConstruct
-    public void ensureIndexAndWarm() {
-        ensureIndex();
-    }
-
-    private void ensureIndex() {
+    /**
+     * Comprueba que el índice exista y, si no, lo crea con el mapping.
+     * Ya no corre en @PostConstruct: lo invoca el DataLoader en segundo plano
+     * para que el arranque no dependa de que Elasticsearch responda.
+     *
+     * @return true si al terminar el índice existe y se puede usar
+     */
+    public boolean ensureIndex() {
         String indexUrl = elasticUrl + "/" + INDEX_NAME;
         try {
             ResponseEntity<Void> head = elasticRest.exchange(indexUrl, HttpMethod.HEAD, authEntity(), Void.class);
             if (head.getStatusCode().is2xxSuccessful()) {
                 System.out.println("✅ Índice '" + INDEX_NAME + "' ya existe.");
-                return;
+                return true;
             }
         } catch (HttpStatusCodeException e) {
             if (e.getStatusCode().value() != 404) {
                 System.err.println("⚠️ HEAD índice devolvió: " + e.getStatusCode());
-            } else {
-                System.out.println("ℹ️ Índice no existe, se creará.");
+                return false;
             }
+            System.out.println("ℹ️ Índice no existe, se creará.");
         } catch (Exception ex) {
             System.err.println("⚠️ Error comprobando índice: " + ex.getMessage());
+            return false;
         }
 
         // Mapping con campo search_as_you_type para sugerencias
@@ -104,11 +108,33 @@ public class IndexInitializer {
                     String.class
             );
             System.out.println("✅ Índice creado: " + createResp.getStatusCode());
+            return true;
         } catch (HttpStatusCodeException e) {
+            // 400 resource_already_exists: otra réplica lo creó entre el HEAD y el PUT
+            if (e.getResponseBodyAsString().contains("resource_already_exists_exception")) {
+                return true;
+            }
             System.err.println("❌ Error creando índice: " + e.getStatusCode() + " body=" + e.getResponseBodyAsString());
         } catch (Exception ex) {
             System.err.println("❌ Error creando índice: " + ex.getMessage());
         }
+        return false;
+    }
+
+    /**
+     * Número de documentos en el índice, o -1 si no se pudo consultar.
+     */
+    @SuppressWarnings("unchecked")
+    public long countDocuments() {
+        try {
+            ResponseEntity<Map> resp = elasticRest.exchange(
+                    elasticUrl + "/" + INDEX_NAME + "/_count", HttpMethod.GET, authEntity(), Map.class);
+            Object count = resp.getBody() == null ? null : resp.getBody().get("count");
+            return count instanceof Number n ? n.longValue() : -1;
+        } catch (Exception ex) {
+            System.err.println("⚠️ Error contando documentos: " + ex.getMessage());
+            return -1;
+        }
     }
 
     private HttpEntity<Void> authEntity() {
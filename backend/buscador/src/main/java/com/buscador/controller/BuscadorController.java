@@ -1,7 +1,13 @@
 package com.buscador.controller;
 
-import com.buscador.service.IndexService;
+import com.buscador.service.HotQueryTracker;
+import com.buscador.service.ReindexJob;
+import com.buscador.service.ReindexJobService;
+import com.buscador.service.SearchQueries;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.*;
@@ -11,13 +17,26 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
 @RestController
 @RequestMapping("/buscador")
 public class BuscadorController {
 
     private final RestTemplate elasticRest;
     private final ObjectMapper mapper;
-    private final IndexService indexService;
+    private final ReindexJobService reindexJobs;
+    private final SearchQueries queries;
+    private final HotQueryTracker hotQueries;
+
+    // partes que acepta /page, en el orden en que se mandan en el _msearch
+    private static final List<String> PAGE_PARTS = List.of("hits", "facets", "suggest", "didyoumean");
 
     @Value("${elasticsearch.url}")
     private String elasticUrl;
@@ -29,11 +48,15 @@ public class BuscadorController {
     public BuscadorController(
             @Qualifier("elasticRest") RestTemplate elasticRest,
             ObjectMapper mapper,
-            IndexService indexService
+            ReindexJobService reindexJobs,
+            SearchQueries queries,
+            HotQueryTracker hotQueries
     ) {
         this.elasticRest = elasticRest;
         this.mapper = mapper;
-        this.indexService = indexService;
+        this.reindexJobs = reindexJobs;
+        this.queries = queries;
+        this.hotQueries = hotQueries;
     }
 
     // 🔎 Buscar
@@ -41,17 +64,8 @@ public class BuscadorController {
     public ResponseEntity<String> search(@RequestParam String q,
                                          @RequestParam(defaultValue = "20") int size) {
         String esUrl = elasticUrl + "/productos/_search";
-        String body = """
-                {
-                  "size": %d,
-                  "query": {
-                    "multi_match": {
-                      "query": "%s",
-                      "fields": ["nombre^3", "descripcion^2", "categoria", "subcategoria"]
-                    }
-                  }
-                }
-                """.formatted(size, q);
+        String body = queries.search(q, size);
+        hotQueries.recordSearch(q);
 
         try {
             System.out.println("🔹 Search query: " + q);
@@ -71,18 +85,8 @@ public class BuscadorController {
     @GetMapping("/suggest")
     public ResponseEntity<String> suggest(@RequestParam String q) {
         String esUrl = elasticUrl + "/productos/_search";
-        String body = """
-                {
-                  "size": 5,
-                  "query": {
-                    "multi_match": {
-                      "query": "%s",
-                      "type": "bool_prefix",
-                      "fields": ["nombre.suggest", "nombre.suggest._2gram", "nombre.suggest._3gram"]
-                    }
-                  }
-                }
-                """.formatted(q);
+        String body = queries.suggest(q);
+        hotQueries.recordPrefix(q);
 
         try {
             System.out.println("🔹 Suggest query: " + q);
@@ -98,13 +102,11 @@ public class BuscadorController {
         }
     }
 
-    // 📊 Facetas
+    // 📊 Facetas (con q, filtradas por la búsqueda)
     @GetMapping("/facets")
-    public ResponseEntity<String> facets() {
+    public ResponseEntity<String> facets(@RequestParam(required = false) String q) {
         String esUrl = elasticUrl + "/productos/_search";
-        String body = """
-                { "size": 0, "aggs": { "categorias": { "terms": { "field": "categoria.keyword" } } } }
-                """;
+        String body = queries.facets(q);
         try {
             String response = elasticRest.postForObject(esUrl, entity(body), String.class);
             return ResponseEntity.ok(response);
@@ -114,12 +116,116 @@ public class BuscadorController {
         }
     }
 
-    // 📥 Indexación manual
+    // 🧩 Página de búsqueda completa en un solo viaje a Elasticsearch (_msearch)
+    // parts: hits, facets, suggest, didyoumean — cada parte vuelve con la misma forma que su endpoint suelto
+    @GetMapping("/page")
+    public ResponseEntity<String> page(@RequestParam String q,
+                                       @RequestParam(defaultValue = "20") int size,
+                                       @RequestParam(defaultValue = "hits,facets") String parts) {
+        Set<String> wanted = new LinkedHashSet<>();
+        for (String part : parts.split(",")) {
+            String p = part.trim().toLowerCase();
+            if (!PAGE_PARTS.contains(p)) {
+                return ResponseEntity.badRequest().body("{\"status\":\"error\",\"message\":\"Parte desconocida. Válidas: " + String.join(",", PAGE_PARTS) + "\"}");
+            }
+            wanted.add(p);
+        }
+        if (wanted.contains("hits")) hotQueries.recordSearch(q);
+        if (wanted.contains("suggest")) hotQueries.recordPrefix(q);
+
+        List<String> names = new ArrayList<>();
+        List<String> bodies = new ArrayList<>();
+        for (String p : PAGE_PARTS) {
+            if (!wanted.contains(p)) continue;
+            names.add(p);
+            bodies.add(switch (p) {
+                case "hits" -> queries.search(q, size);
+                case "facets" -> queries.facets(q);
+                case "suggest" -> queries.suggest(q);
+                default -> queries.didYouMean(q);
+            });
+        }
+
+        String esUrl = elasticUrl + "/productos/_msearch";
+        try {
+            String response = elasticRest.postForObject(esUrl, ndjsonEntity(queries.msearch(bodies)), String.class);
+            JsonNode responses = mapper.readTree(response).path("responses");
+            ObjectNode combined = mapper.createObjectNode();
+            for (int i = 0; i < names.size(); i++) {
+                combined.set(names.get(i), responses.path(i));
+            }
+            return ResponseEntity.ok(mapper.writeValueAsString(combined));
+        } catch (HttpClientErrorException e) {
+            System.err.println("❌ Elasticsearch returned error: " + e.getStatusCode());
+            return ResponseEntity.status(e.getStatusCode()).body("{\"status\":\"error\",\"message\":\"Elasticsearch error\"}");
+        } catch (RestClientException | JsonProcessingException e) {
+            System.err.println("❌ Elasticsearch msearch failed: " + e.getMessage());
+            return ResponseEntity.status(502).body("{\"status\":\"error\",\"message\":\"Application failed to respond\"}");
+        }
+    }
+
+    // 📥 Indexación manual: responde enseguida (202) con el job. La corre el líder: si esta réplica
+    // no lo es, el pedido queda en cola para él. Si ya hay uno pendiente, se suma a ése
     @PostMapping("/index-from-operador")
-    public ResponseEntity<String> indexFromOperador() {
-        int total = indexService.reindexAll();
-        if (total > 0) return ResponseEntity.ok("{\"status\":\"ok\",\"message\":\"Indexados " + total + " productos.\"}");
-        return ResponseEntity.status(500).body("{\"status\":\"error\",\"message\":\"No se indexaron productos.\"}");
+    public ResponseEntity<Map<String, Object>> indexFromOperador() {
+        ReindexJobService.Submission submission;
+        try {
+            submission = reindexJobs.request(true);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("status", "error", "message", e.getMessage()));
+        }
+        ReindexJob job = submission.job();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "accepted");
+        body.put("jobId", job.id());
+        body.put("coalesced", submission.coalesced());
+        body.put("forwardedToLeader", submission.forwarded());
+        body.put("job", job.status());
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, "/buscador/reindex-jobs/" + job.id())
+                .body(body);
+    }
+
+    // 📋 Últimas reindexaciones (historial compartido entre réplicas, la más reciente primero)
+    @GetMapping("/reindex-jobs")
+    public ResponseEntity<Map<String, Object>> reindexJobs() {
+        List<Map<String, Object>> jobs = reindexJobs.history();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("current", jobs.stream()
+                .filter(j -> ReindexJob.State.RUNNING.name().equals(j.get("state")))
+                .map(j -> j.get("id"))
+                .findFirst().orElse(null));
+        body.put("jobs", jobs);
+        return ResponseEntity.ok(body);
+    }
+
+    // 📊 Avance de una reindexación: contadores, docs/s y ETA (desde cualquier réplica)
+    @GetMapping("/reindex-jobs/{id}")
+    public ResponseEntity<Map<String, Object>> reindexJob(@PathVariable String id) {
+        return reindexJobs.status(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> jobNotFound(id));
+    }
+
+    // 🛑 Cancelar: se corta antes del próximo lote de _bulk
+    @DeleteMapping("/reindex-jobs/{id}")
+    public ResponseEntity<Map<String, Object>> cancelReindexJob(@PathVariable String id) {
+        Optional<Map<String, Object>> status = reindexJobs.status(id);
+        if (status.isEmpty()) return jobNotFound(id);
+        // si el pedido se sumó a otro job, se cancela ese job
+        String target = String.valueOf(status.get().get("id"));
+        if (ReindexJob.isFinishedState(status.get().get("state")) || !reindexJobs.cancel(target)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "error",
+                    "message", "El job ya terminó (" + reindexJobs.status(target).map(j -> j.get("state")).orElse("?") + ")."));
+        }
+        return ResponseEntity.accepted().body(reindexJobs.status(target).orElse(status.get()));
+    }
+
+    private static ResponseEntity<Map<String, Object>> jobNotFound(String id) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("status", "error", "message", "No existe el job (o ya salió del historial)."));
     }
 
     // Utilidad para headers
@@ -129,4 +235,11 @@ public class BuscadorController {
         headers.set("Authorization", "ApiKey " + elasticApiKey);
         return new HttpEntity<>(body, headers);
     }
+
+    private HttpEntity<String> ndjsonEntity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        headers.set("Authorization", "ApiKey " + elasticApiKey);
+        return new HttpEntity<>(body, headers);
+    }
 }
@@ -0,0 +1,19 @@
+package com.buscador.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Producto tal como llega del Operador y como se guarda en el índice "productos".
+ * Campos desconocidos se ignoran para no romper si el Operador agrega columnas.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ProductoDoc(
+        Long id,
+        String nombre,
+        String categoria,
+        String subcategoria,
+        Double precio,
+        String descripcion,
+        String imagen
+) {
+}
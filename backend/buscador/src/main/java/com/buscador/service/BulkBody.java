@@ -0,0 +1,81 @@
+package com.buscador.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+/**
+ * Cuerpo de un _bulk de Elasticsearch en JSON (NDJSON, separado por '\n')
+ * o en Smile (cada acción/documento es un objeto Smile separado por 0xFF).
+ */
+class BulkBody {
+
+    static final MediaType SMILE = MediaType.parseMediaType("application/smile");
+
+    private final ObjectMapper mapper;
+    private final byte separator;
+    private final MediaType contentType;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+    private int actions = 0;
+
+    private BulkBody(ObjectMapper mapper, byte separator, MediaType contentType) {
+        this.mapper = mapper;
+        this.separator = separator;
+        this.contentType = contentType;
+    }
+
+    static BulkBody json(ObjectMapper jsonMapper) {
+        return new BulkBody(jsonMapper, (byte) '\n', MediaType.APPLICATION_NDJSON);
+    }
+
+    static BulkBody smile(ObjectMapper smileMapper) {
+        return new BulkBody(smileMapper, (byte) 0xFF, SMILE);
+    }
+
+    /** Serializa un documento en el formato de este bulk (también sirve para hashearlo). */
+    byte[] encode(Object doc) throws JsonProcessingException {
+        return mapper.writeValueAsBytes(doc);
+    }
+
+    void index(String id, byte[] doc) throws JsonProcessingException {
+        append(mapper.writeValueAsBytes(Map.of("index", Map.of("_id", id))));
+        append(doc);
+        actions++;
+    }
+
+    void delete(String id) throws JsonProcessingException {
+        append(mapper.writeValueAsBytes(Map.of("delete", Map.of("_id", id))));
+        actions++;
+    }
+
+    boolean isEmpty() {
+        return actions == 0;
+    }
+
+    /** Cantidad de acciones (index + delete) acumuladas. */
+    int actions() {
+        return actions;
+    }
+
+    /** Vacía el cuerpo para reutilizarlo en el siguiente lote. */
+    void reset() {
+        out.reset();
+        actions = 0;
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    MediaType contentType() {
+        return contentType;
+    }
+
+    private void append(byte[] bytes) {
+        out.writeBytes(bytes);
+        out.write(separator);
+    }
+}
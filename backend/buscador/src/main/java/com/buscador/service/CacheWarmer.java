@@ -0,0 +1,125 @@
+package com.buscador.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 🔥 Precalienta Elasticsearch tras cada reindexación: repite en segundo plano las
+ * consultas y prefijos más frecuentes ({@link HotQueryTracker}).
+ *
+ * Lo que se calienta de verdad es la caché de páginas del sistema operativo (los
+ * segmentos nuevos quedan leídos) y los global ordinals de categoria/subcategoria
+ * que usan las facetas. La request cache de ES sólo guarda búsquedas con size 0 y
+ * con el cuerpo idéntico byte a byte: de las consultas repetidas, sólo el /facets
+ * sin q coincide con lo que mandan los usuarios. Las demás se arman con la clave
+ * normalizada y no con el texto original, así que no la llenan.
+ *
+ * Sólo lo hace la réplica que reindexó: la caché de ES es compartida y el resto de
+ * réplicas no tiene cachés locales que calentar.
+ */
+@Service
+public class CacheWarmer {
+
+    private final RestTemplate elasticRest;
+    private final SearchQueries queries;
+    private final HotQueryTracker tracker;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "cache-warmer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${elasticsearch.url}")
+    private String elasticUrl;
+
+    @Value("${elasticsearch.apiKey}")
+    private String elasticApiKey;
+
+    @Value("${buscador.hot-queries.warm-top:20}")
+    private int warmTop;
+
+    public CacheWarmer(@Qualifier("elasticRest") RestTemplate elasticRest,
+                       SearchQueries queries,
+                       HotQueryTracker tracker) {
+        this.elasticRest = elasticRest;
+        this.queries = queries;
+        this.tracker = tracker;
+    }
+
+    @EventListener
+    public void onNewGeneration(IndexGenerationEvent event) {
+        if (event.publishedHere()) warmAsync();
+    }
+
+    /** Lanza un precalentamiento si no hay otro en curso. */
+    public void warmAsync() {
+        if (!running.compareAndSet(false, true)) return;
+        executor.execute(() -> {
+            try {
+                warm();
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private void warm() {
+        long start = System.currentTimeMillis();
+        List<TopKSketch.Entry> searches = tracker.topSearches(warmTop);
+        List<TopKSketch.Entry> prefixes = tracker.topPrefixes(warmTop);
+
+        String searchUrl = elasticUrl + "/productos/_search";
+        int ok = 0;
+        try {
+            // que los documentos recién indexados ya sean visibles antes de repetir las consultas
+            elasticRest.postForObject(elasticUrl + "/productos/_refresh", entity("{}"), String.class);
+        } catch (Exception e) {
+            System.err.println("⚠️ Refresh antes de precalentar falló: " + e.getMessage());
+        }
+        // mismo cuerpo que /facets sin q: éste sí queda en la request cache
+        ok += run(searchUrl, queries.facets(null));
+        for (TopKSketch.Entry e : searches) {
+            ok += run(searchUrl, queries.search(e.key(), 20));
+            ok += run(searchUrl, queries.facets(e.key()));
+        }
+        for (TopKSketch.Entry e : prefixes) {
+            ok += run(searchUrl, queries.suggest(e.key()));
+        }
+        System.out.println("🔥 Elasticsearch precalentado: " + searches.size() + " búsquedas y " + prefixes.size()
+                + " prefijos (" + ok + " consultas OK) en " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private int run(String url, String body) {
+        try {
+            elasticRest.postForObject(url, entity(body), String.class);
+            return 1;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private HttpEntity<String> entity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Authorization", "ApiKey " + elasticApiKey);
+        return new HttpEntity<>(body, headers);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
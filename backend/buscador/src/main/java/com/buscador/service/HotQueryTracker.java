@@ -0,0 +1,67 @@
+package com.buscador.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 🔥 Consultas más frecuentes de /search y prefijos más frecuentes de /suggest.
+ * Registrar una consulta es O(1) y sin locks (ver {@link TopKSketch}); cada
+ * cierto tiempo los conteos se dividen a la mitad para seguir al tráfico reciente.
+ */
+@Service
+public class HotQueryTracker {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final int MAX_LENGTH = 100;
+
+    private final TopKSketch searches;
+    private final TopKSketch prefixes;
+
+    public HotQueryTracker(@Value("${buscador.hot-queries.k:50}") int k) {
+        this.searches = new TopKSketch(k, 2048);
+        this.prefixes = new TopKSketch(k, 2048);
+    }
+
+    public void recordSearch(String q) {
+        String key = normalize(q);
+        if (!key.isEmpty()) searches.add(key);
+    }
+
+    public void recordPrefix(String q) {
+        String key = normalize(q);
+        if (!key.isEmpty()) prefixes.add(key);
+    }
+
+    public List<TopKSketch.Entry> topSearches(int n) {
+        return searches.top(n);
+    }
+
+    public List<TopKSketch.Entry> topPrefixes(int n) {
+        return prefixes.top(n);
+    }
+
+    @Scheduled(fixedDelayString = "${buscador.hot-queries.decay-ms:600000}")
+    public void decay() {
+        searches.decay();
+        prefixes.decay();
+    }
+
+    /**
+     * Minúsculas, sin tildes y con espacios colapsados: lo mismo que hace el
+     * folding_analyzer del índice, así "Remera " y "remera" cuentan juntas.
+     */
+    static String normalize(String q) {
+        if (q == null) return "";
+        String s = Normalizer.normalize(q, Normalizer.Form.NFD);
+        s = DIACRITICS.matcher(s).replaceAll("");
+        s = SPACES.matcher(s.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        return s.length() > MAX_LENGTH ? s.substring(0, MAX_LENGTH) : s;
+    }
+}
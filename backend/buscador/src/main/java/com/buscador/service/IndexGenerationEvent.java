@@ -0,0 +1,13 @@
+package com.buscador.service;
+
+/**
+ * Se publica cuando cambia la generación del índice anunciada en el lease:
+ * en el líder justo después de su reindexación, y en el resto de réplicas
+ * cuando ven la nueva generación en el siguiente heartbeat.
+ *
+ * @param generation    número de generación publicado por el líder
+ * @param fencingToken  token del líder que la publicó
+ * @param publishedHere true si esta réplica es la que reindexó
+ */
+public record IndexGenerationEvent(long generation, long fencingToken, boolean publishedHere) {
+}
@@ -1,25 +1,44 @@
 package com.buscador.service;
 
+import com.buscador.model.ProductoDoc;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class IndexService {
 
     private final RestTemplate operadorRest;
     private final RestTemplate elasticRest;
+    private final ReindexLease lease;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper smileMapper = new SmileMapper();
+
+    private static final MediaType OPERADOR_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    // estado para la reindexación incremental (sólo se toca dentro de reindex/resetChangeTracking)
+    private final Map<String, String> docHashes = new HashMap<>();
+    private String catalogEtag;
+    private long trackedToken = -1;
+    private boolean purgeNeeded = true; // hasta el primer _delete_by_query exitoso tras arrancar o resetear
 
     @Value("${elasticsearch.url}")
     private String elasticUrl;
@@ -30,63 +49,265 @@ public class IndexService {
     @Value("${operador.url}")
     private String operadorUrl;
 
+    // formato del _bulk hacia Elasticsearch: json (NDJSON) o smile
+    @Value("${elasticsearch.bulk-format:json}")
+    private String bulkFormat;
+
+    // acciones por request de _bulk: entre lote y lote se informa el avance y se puede cancelar
+    @Value("${elasticsearch.bulk-size:500}")
+    private int bulkSize;
+
     public IndexService(
             @Qualifier("operadorRest") RestTemplate operadorRest,
-            @Qualifier("elasticRest") RestTemplate elasticRest
+            @Qualifier("elasticRest") RestTemplate elasticRest,
+            ReindexLease lease
     ) {
         this.operadorRest = operadorRest;
         this.elasticRest = elasticRest;
+        this.lease = lease;
     }
 
     /**
-     * 🔄 Reindexa todos los productos desde el Operador → Elasticsearch
+     * 🔄 Reindexa desde el Operador.
+     *
+     * Sin force, pide el catálogo con If-None-Match y, si el Operador contesta 304,
+     * no hace nada más. Si cambió, sólo manda a Elasticsearch los documentos cuyo
+     * hash es distinto al último indexado, y borra los que desaparecieron del catálogo.
+     * Con force se ignoran ETag y hashes y se reenvía todo.
      */
-    @SuppressWarnings("unchecked")
-    public int reindexAll() {
-        List<Map<String, Object>> productos;
+    public ReindexResult reindex(boolean force) {
+        return reindex(force, ReindexProgress.NONE);
+    }
+
+    /**
+     * Igual que {@link #reindex(boolean)}, pero el _bulk se manda en lotes de
+     * {@code elasticsearch.bulk-size} acciones: después de cada lote se informa el avance
+     * y, si se pidió cancelar, no se manda el siguiente. Lo ya enviado queda indexado
+     * (y con su hash guardado); el ETag no se guarda, así la próxima vez se completa.
+     */
+    public synchronized ReindexResult reindex(boolean force, ReindexProgress progress) {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        // Smile si el Operador lo ofrece; JSON como respaldo
+        requestHeaders.setAccept(List.of(OPERADOR_SMILE, MediaType.APPLICATION_JSON));
+        if (!force && catalogEtag != null) {
+            requestHeaders.setIfNoneMatch(catalogEtag);
+        }
 
+        ResponseEntity<ProductoDoc[]> response;
         try {
-            productos = operadorRest.getForObject(operadorUrl, List.class);
+            response = operadorRest.exchange(operadorUrl, HttpMethod.GET, new HttpEntity<>(requestHeaders), ProductoDoc[].class);
         } catch (Exception e) {
             System.err.println("❌ Error al obtener productos del Operador: " + e.getMessage());
-            return 0;
+            return ReindexResult.empty();
         }
 
-        if (productos == null || productos.isEmpty()) {
+        if (response.getStatusCode().value() == 304) {
+            return ReindexResult.notModifiedResult();
+        }
+
+        ProductoDoc[] productos = response.getBody();
+        if (productos == null || productos.length == 0) {
             System.out.println("ℹ️ Operador no devolvió productos.");
-            return 0;
+            return ReindexResult.empty();
         }
+        progress.fetched(productos.length);
 
-        StringBuilder bulkBody = new StringBuilder();
-        for (Map<String, Object> p : productos) {
-            Object rawId = p.get("id");
-            if (rawId == null) continue;
-            String id = String.valueOf(rawId);
+        BulkBody bulkBody = "smile".equalsIgnoreCase(bulkFormat) ? BulkBody.smile(smileMapper) : BulkBody.json(mapper);
+        Map<String, String> pending = new HashMap<>();   // id -> hash de lo que se manda ahora
+        Set<String> seen = new HashSet<>();
+        BulkTally tally = new BulkTally();
+        tally.reported = new BulkTally();
+        boolean aborted = false;
+        for (ProductoDoc p : productos) {
+            if (p.id() == null) continue;
+            String id = String.valueOf(p.id());
+            seen.add(id);
 
-            bulkBody.append("{\"index\":{\"_id\":\"").append(id).append("\"}}\n");
             try {
-                bulkBody.append(mapper.writeValueAsString(p)).append("\n");
+                byte[] doc = bulkBody.encode(p);
+                String hash = sha256(doc);
+                if (!force && hash.equals(docHashes.get(id))) {
+                    tally.unchanged++;
+                    continue;
+                }
+                pending.put(id, hash);
+                bulkBody.index(id, doc);
             } catch (JsonProcessingException e) {
                 System.err.println("⚠️ Error serializando producto id=" + id + ": " + e.getMessage());
+                tally.failed++;
+            }
+            if (bulkBody.actions() >= bulkSize) {
+                if (!flush(bulkBody, pending, tally, progress)) {
+                    aborted = true;
+                    break;
+                }
+                bulkBody.reset();
+            }
+        }
+
+        if (!aborted && (force || purgeNeeded)) {
+            // los hashes no conocen lo indexado antes de este arranque/liderazgo: se borra por consulta
+            aborted = !flush(bulkBody, pending, tally, progress) || !deleteMissing(seen, tally, progress);
+        } else if (!aborted) {
+            List<String> removed = docHashes.keySet().stream().filter(id -> !seen.contains(id)).toList();
+            try {
+                for (String id : removed) {
+                    bulkBody.delete(id);
+                }
+            } catch (JsonProcessingException e) {
+                System.err.println("⚠️ Error armando borrados: " + e.getMessage());
             }
+            aborted = !flush(bulkBody, pending, tally, progress);
+        }
+
+        report(tally, progress);
+        if (tally.batches > 0) {
+            System.out.println("✅ Bulk Elasticsearch: " + tally.indexed + " indexados, " + tally.deleted + " borrados, "
+                    + tally.unchanged + " sin cambios, " + tally.failed + " con error"
+                    + (tally.batches > 1 ? " (" + tally.batches + " lotes)" : "")
+                    + (tally.cancelled ? ", cancelada." : "."));
+        }
+
+        // con errores o a medias no se guarda el ETag: la próxima vez se vuelve a pedir el catálogo
+        catalogEtag = tally.failed == 0 && !aborted ? response.getHeaders().getETag() : null;
+        return new ReindexResult(false, productos.length, tally.indexed, tally.unchanged, tally.deleted, tally.failed,
+                tally.cancelled);
+    }
+
+    /**
+     * 🧹 Borra de Elasticsearch todo producto cuyo id no vino en el catálogo
+     * (_delete_by_query con must_not ids). Hace falta en las corridas completas y en la
+     * primera tras arrancar o tomar el liderazgo, porque ahí {@code docHashes} está vacío
+     * y no sabe qué había indexado.
+     *
+     * @return false si hay que cortar la reindexación (cancelada o Elasticsearch no respondió)
+     */
+    @SuppressWarnings("unchecked")
+    private boolean deleteMissing(Set<String> seen, BulkTally tally, ReindexProgress progress) {
+        if (progress.cancelRequested()) {
+            tally.cancelled = true;
+            return false;
         }
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        headers.setContentType(MediaType.APPLICATION_JSON);
         headers.set("Authorization", "ApiKey " + elasticApiKey);
 
-        HttpEntity<String> entity = new HttpEntity<>(bulkBody.toString(), headers);
+        Map<String, Object> query = Map.of("query",
+                Map.of("bool", Map.of("must_not", Map.of("ids", Map.of("values", seen)))));
+        try {
+            String url = elasticUrl + "/productos/_delete_by_query?conflicts=proceed";
+            Map<String, Object> resp = elasticRest.postForObject(url,
+                    new HttpEntity<>(mapper.writeValueAsString(query), headers), Map.class);
+            int deleted = resp != null && resp.get("deleted") instanceof Number n ? n.intValue() : 0;
+            if (deleted > 0) {
+                System.out.println("🧹 Borrados " + deleted + " productos que ya no están en el catálogo.");
+            }
+            tally.deleted += deleted;
+            docHashes.keySet().retainAll(seen);
+            purgeNeeded = false;
+            report(tally, progress);
+            return true;
+        } catch (Exception e) {
+            System.err.println("❌ Error borrando productos que ya no están en el catálogo: " + e.getMessage());
+            return false;
+        }
+    }
 
+    /**
+     * Manda un lote del _bulk y guarda el hash de lo que Elasticsearch aceptó.
+     *
+     * @return false si hay que cortar la reindexación (cancelada o Elasticsearch no respondió)
+     */
+    @SuppressWarnings("unchecked")
+    private boolean flush(BulkBody bulkBody, Map<String, String> pending, BulkTally tally, ReindexProgress progress) {
+        if (bulkBody.isEmpty()) return true;
+        if (progress.cancelRequested()) {
+            tally.cancelled = true;
+            return false;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(bulkBody.contentType());
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON)); // la respuesta la queremos en JSON
+        headers.set("Authorization", "ApiKey " + elasticApiKey);
+
+        HttpEntity<byte[]> entity = new HttpEntity<>(bulkBody.toByteArray(), headers);
+
+        Map<String, Object> bulkResponse;
         try {
             String bulkUrl = elasticUrl + "/productos/_bulk";
-            String response = elasticRest.postForObject(bulkUrl, entity, String.class);
-            System.out.println("✅ Respuesta Elasticsearch: " + response);
+            bulkResponse = elasticRest.postForObject(bulkUrl, entity, Map.class);
         } catch (Exception ex) {
             System.err.println("❌ Error indexando en Elasticsearch: " + ex.getMessage());
-            return 0;
+            tally.failed += bulkBody.actions();
+            report(tally, progress);
+            return false;
         }
 
-        return productos.size();
+        List<Map<String, Object>> items = bulkResponse == null ? List.of()
+                : (List<Map<String, Object>>) bulkResponse.getOrDefault("items", List.of());
+        for (Map<String, Object> item : items) {
+            Map<String, Object> op = (Map<String, Object>) item.values().iterator().next();
+            String id = String.valueOf(op.get("_id"));
+            int status = op.get("status") instanceof Number n ? n.intValue() : 500;
+            if (item.containsKey("delete")) {
+                if (status < 300 || status == 404) {
+                    docHashes.remove(id);
+                    tally.deleted++;
+                } else {
+                    tally.failed++;
+                }
+            } else if (status < 300) {
+                docHashes.put(id, pending.get(id));
+                tally.indexed++;
+            } else {
+                System.err.println("⚠️ Elasticsearch rechazó id=" + id + ": " + op.get("error"));
+                tally.failed++;
+            }
+        }
+        tally.batches++;
+        report(tally, progress);
+        return true;
+    }
+
+    // informa lo que cambió desde el último aviso (los "sin cambios" se acumulan entre lotes)
+    private static void report(BulkTally tally, ReindexProgress progress) {
+        progress.processed(tally.indexed - tally.reported.indexed, tally.unchanged - tally.reported.unchanged,
+                tally.deleted - tally.reported.deleted, tally.failed - tally.reported.failed);
+        tally.reported.indexed = tally.indexed;
+        tally.reported.unchanged = tally.unchanged;
+        tally.reported.deleted = tally.deleted;
+        tally.reported.failed = tally.failed;
+    }
+
+    private static final class BulkTally {
+        int indexed;
+        int unchanged;
+        int deleted;
+        int failed;
+        int batches;
+        boolean cancelled;
+        BulkTally reported;
+    }
+
+    /**
+     * Olvida el ETag y los hashes: la próxima reindexación manda todo.
+     * Hace falta al (re)tomar el liderazgo, porque otro líder pudo escribir el índice mientras tanto.
+     */
+    public synchronized void resetChangeTracking() {
+        catalogEtag = null;
+        docHashes.clear();
+        purgeNeeded = true;
+    }
+
+    private static String sha256(byte[] value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value);
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -144,19 +365,52 @@ public class IndexService {
     }
 
     /**
-     * ⏰ Reindexación automática cada 30 segundos
+     * 👑 Reindexa y, si el índice cambió, publica la nueva generación en el lease.
+     * Sólo debe llamarse con el token vigente de esta réplica como líder.
+     *
+     * Antes de cada lote de _bulk se vuelve a comprobar el token: si esta réplica perdió
+     * el lease (pausa larga, partición), se corta ahí y no sigue escribiendo sobre lo
+     * que ya está indexando el líder nuevo.
      */
-    @Scheduled(fixedDelay = 30000)
-    public void autoReindex() {
-        try {
-            int total = reindexAll();
-            if (total > 0) {
-                System.out.println("✅ Reindexación periódica completada. Productos indexados: " + total);
-            } else {
-                System.out.println("⚠️ Reindexación periódica: sin productos disponibles.");
+    public synchronized ReindexResult reindexAsLeader(long fencingToken, boolean force, ReindexProgress progress) {
+        if (fencingToken != trackedToken) {
+            resetChangeTracking();
+            trackedToken = fencingToken;
+        }
+        ReindexResult result = reindex(force, new FencedProgress(progress, fencingToken));
+        if (result.changed()) lease.publishGeneration(fencingToken);
+        return result;
+    }
+
+    /** Delega en el progreso del job, pero además corta si el token dejó de ser el vigente. */
+    private final class FencedProgress implements ReindexProgress {
+
+        private final ReindexProgress delegate;
+        private final long token;
+        private boolean fenced;
+
+        FencedProgress(ReindexProgress delegate, long token) {
+            this.delegate = delegate;
+            this.token = token;
+        }
+
+        @Override
+        public void fetched(int products) {
+            delegate.fetched(products);
+        }
+
+        @Override
+        public void processed(int indexed, int unchanged, int deleted, int failed) {
+            delegate.processed(indexed, unchanged, deleted, failed);
+        }
+
+        @Override
+        public boolean cancelRequested() {
+            if (!fenced && lease.fencingToken() != token) {
+                fenced = true;
+                System.err.println("⛔ Reindexación cortada: el token " + token + " ya no es el vigente.");
             }
-        } catch (Exception e) {
-            System.err.println("❌ Error en reindexación periódica: " + e.getMessage());
+            return fenced || delegate.cancelRequested();
         }
     }
 }
@@ -0,0 +1,229 @@
+package com.buscador.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 📋 Una corrida de reindexación manejada por {@link ReindexJobService}.
+ *
+ * Los contadores los actualiza el hilo que reindexa (vía {@link ReindexProgress})
+ * y se leen desde los requests de estado, por eso son atómicos/volátiles.
+ * El id es {@code <instancia>-<arranque>-<secuencia>}: único entre réplicas y reinicios.
+ */
+public class ReindexJob implements ReindexProgress {
+
+    public enum Trigger { BOOTSTRAP, SCHEDULED, MANUAL }
+
+    /** COALESCED sólo lo tienen los pedidos de otras réplicas que el líder sumó a otro job. */
+    public enum State { QUEUED, RUNNING, SUCCEEDED, NOT_MODIFIED, FAILED, CANCELLED, COALESCED }
+
+    private static final Set<String> FINISHED_STATES = Set.of(
+            State.SUCCEEDED.name(), State.NOT_MODIFIED.name(), State.FAILED.name(),
+            State.CANCELLED.name(), State.COALESCED.name());
+
+    private final String id;
+    private final Trigger trigger;
+    private final Instant createdAt;
+    private final String requestedBy;
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger coalesced = new AtomicInteger();
+    private final CompletableFuture<ReindexResult> result = new CompletableFuture<>();
+
+    private volatile boolean force;
+    private volatile State state = State.QUEUED;
+    private volatile String instance;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile boolean cancelRequested;
+    private volatile String error;
+    private volatile boolean persisted;
+
+    ReindexJob(String id, Trigger trigger, boolean force, Instant createdAt, String requestedBy) {
+        this.id = id;
+        this.trigger = trigger;
+        this.force = force;
+        this.createdAt = createdAt;
+        this.requestedBy = requestedBy;
+    }
+
+    /** true si el estado (de un job local o de un documento del historial) ya no va a cambiar. */
+    public static boolean isFinishedState(Object state) {
+        return state != null && FINISHED_STATES.contains(String.valueOf(state));
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Trigger trigger() {
+        return trigger;
+    }
+
+    public boolean force() {
+        return force;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return result.isDone();
+    }
+
+    /** Espera a que termine (o a que se le pase al nuevo líder; ahí devuelve un resultado vacío). */
+    public ReindexResult await() {
+        return result.join();
+    }
+
+    /**
+     * Pide cancelar: se corta antes del próximo lote de _bulk.
+     *
+     * @return false si ya había terminado
+     */
+    public boolean cancel() {
+        if (isFinished()) return false;
+        cancelRequested = true;
+        return true;
+    }
+
+    @Override
+    public boolean cancelRequested() {
+        return cancelRequested;
+    }
+
+    @Override
+    public void fetched(int products) {
+        fetched.set(products);
+    }
+
+    @Override
+    public void processed(int indexed, int unchanged, int deleted, int failed) {
+        this.indexed.addAndGet(indexed);
+        this.unchanged.addAndGet(unchanged);
+        this.deleted.addAndGet(deleted);
+        this.failed.addAndGet(failed);
+    }
+
+    /** Suma otro disparador a este job pendiente; si alguno pidió force, el job queda forzado. */
+    void absorb(boolean force) {
+        coalesced.incrementAndGet();
+        if (force) this.force = true;
+    }
+
+    /**
+     * Corrida periódica que nadie más pidió y que todavía no trajo cambios del Operador
+     * (lo normal es que termine en 304): no se guarda en el historial compartido.
+     */
+    boolean silent() {
+        return trigger == Trigger.SCHEDULED && coalesced.get() == 0 && fetched.get() == 0;
+    }
+
+    void start(String instance) {
+        this.instance = instance;
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void finish(ReindexResult r) {
+        if (r.cancelled() && cancelRequested) {
+            state = State.CANCELLED;
+        } else if (r.cancelled()) {
+            // nadie pidió cancelar: se cortó porque esta réplica perdió el lease
+            error = "Se perdió el lease de líder a mitad de la corrida; la completa el nuevo líder";
+            state = State.FAILED;
+        } else if (r.notModified()) {
+            state = State.NOT_MODIFIED;
+        } else if (r.fetched() == 0) {
+            error = "No se obtuvieron productos del Operador";
+            state = State.FAILED;
+        } else if (r.indexed() + r.unchanged() == 0) {
+            error = "Elasticsearch no aceptó ningún documento";
+            state = State.FAILED;
+        } else {
+            state = State.SUCCEEDED;
+        }
+        finishedAt = Instant.now();
+        result.complete(r);
+    }
+
+    void cancelled() {
+        state = State.CANCELLED;
+        finishedAt = Instant.now();
+        result.complete(new ReindexResult(false, 0, 0, 0, 0, 0, true));
+    }
+
+    void fail(Exception e) {
+        error = e.getMessage();
+        state = State.FAILED;
+        finishedAt = Instant.now();
+        result.complete(ReindexResult.empty());
+    }
+
+    /** Esta réplica dejó de ser líder antes de empezarlo: queda en cola para el líder nuevo. */
+    void handOff() {
+        state = State.QUEUED;
+        instance = null;
+        result.complete(new ReindexResult(false, 0, 0, 0, 0, 0, true));
+    }
+
+    boolean persisted() {
+        return persisted;
+    }
+
+    void markPersisted() {
+        persisted = true;
+    }
+
+    /**
+     * Estado para la API (y el documento que se guarda en el historial compartido):
+     * contadores, throughput (docs/s) y ETA. El ETA se estima con los productos
+     * recibidos que aún no se procesaron.
+     */
+    public Map<String, Object> status() {
+        int total = fetched.get();
+        int done = indexed.get() + unchanged.get() + failed.get();
+        Instant from = startedAt;
+        Instant to = finishedAt != null ? finishedAt : Instant.now();
+        long elapsedMs = from == null ? 0 : Math.max(1, Duration.between(from, to).toMillis());
+        double throughput = elapsedMs == 0 ? 0 : done * 1000.0 / elapsedMs;
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("fetched", total);
+        progress.put("indexed", indexed.get());
+        progress.put("unchanged", unchanged.get());
+        progress.put("deleted", deleted.get());
+        progress.put("failed", failed.get());
+        progress.put("percent", total == 0 ? 0 : Math.min(100, done * 100 / total));
+        progress.put("docsPerSecond", Math.round(throughput * 10) / 10.0);
+        if (state == State.RUNNING && total > 0 && throughput > 0) {
+            progress.put("etaSeconds", Math.round(Math.max(0, total - done) / throughput));
+        }
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", id);
+        status.put("trigger", trigger.name());
+        status.put("force", force);
+        status.put("state", state.name());
+        status.put("instance", instance);
+        status.put("requestedBy", requestedBy);
+        status.put("cancelRequested", cancelRequested);
+        status.put("coalescedTriggers", coalesced.get());
+        status.put("createdAt", createdAt.toString());
+        status.put("startedAt", from == null ? null : from.toString());
+        status.put("finishedAt", finishedAt == null ? null : finishedAt.toString());
+        status.put("elapsedMs", elapsedMs);
+        status.put("progress", progress);
+        if (error != null) status.put("error", error);
+        return status;
+    }
+}
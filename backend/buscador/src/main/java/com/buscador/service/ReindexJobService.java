@@ -0,0 +1,321 @@
+package com.buscador.service;
+
+import com.buscador.bootstrap.IndexReadinessHealthIndicator;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🧵 Reindexaciones como jobs asíncronos, de a uno por vez y sólo en el líder.
+ *
+ * Todos los disparadores (carga inicial, reindexación periódica y el endpoint manual)
+ * terminan en {@link #submit}, que corre en la réplica que tiene el lease. Si no hay
+ * ningún job en curso, el nuevo arranca enseguida en un hilo propio. Si hay uno, queda
+ * como único job pendiente, que arranca cuando termina el actual; los disparadores que
+ * llegan mientras tanto se suman a ese pendiente (y si alguno pidió force, queda forzado).
+ * No se suman al que está corriendo: ése ya pudo haber leído el catálogo.
+ *
+ * Un pedido manual que llega a otra réplica se deja en cola en {@link ReindexJobStore}
+ * y el líder lo toma en su próxima revisión de la cola. El estado de los jobs también se
+ * guarda ahí, así cualquier réplica puede responder por un id o cancelarlo. Las corridas
+ * periódicas que terminan en 304 no escriben nada: con el catálogo quieto el costo sigue
+ * siendo un GET condicional al Operador cada 30 segundos y una búsqueda en la cola.
+ */
+@Service
+public class ReindexJobService {
+
+    private final IndexService indexService;
+    private final ReindexLease lease;
+    private final IndexReadinessHealthIndicator readiness;
+    private final ReindexJobStore store;
+    private final int historySize;
+    private final String idPrefix;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Deque<ReindexJob> history = new ArrayDeque<>(); // el más reciente primero; guardado por this
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "reindex-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ReindexJob current;
+    private ReindexJob pending;
+
+    /**
+     * @param coalesced el disparador se sumó al job pendiente en vez de crear uno
+     * @param forwarded esta réplica no es líder: el pedido quedó en cola para el líder
+     */
+    public record Submission(ReindexJob job, boolean coalesced, boolean forwarded) {
+    }
+
+    public ReindexJobService(IndexService indexService,
+                             ReindexLease lease,
+                             IndexReadinessHealthIndicator readiness,
+                             ReindexJobStore store,
+                             @Value("${buscador.reindex.history-size:20}") int historySize) {
+        this.indexService = indexService;
+        this.lease = lease;
+        this.readiness = readiness;
+        this.store = store;
+        this.historySize = historySize;
+        // el instance-id puede repetirse entre reinicios (RAILWAY_REPLICA_ID o configurado a mano):
+        // con el arranque en el id, un job nuevo nunca reutiliza el documento de uno viejo
+        this.idPrefix = lease.instanceId() + "-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    }
+
+    /** Dispara una reindexación en esta réplica, que debe ser la líder (carga inicial y periódica). */
+    public Submission submit(ReindexJob.Trigger trigger, boolean force) {
+        return submitLocal(newId(), trigger, force, Instant.now(), lease.instanceId());
+    }
+
+    /**
+     * Pedido manual: en el líder se encola acá mismo; en otra réplica se deja en el
+     * historial compartido para que lo tome el líder.
+     *
+     * @throws IllegalStateException si no es líder y no se pudo dejar el pedido
+     */
+    public Submission request(boolean force) {
+        if (lease.isLeader()) {
+            Submission submission = submit(ReindexJob.Trigger.MANUAL, force);
+            store.save(submission.job()); // visible ya desde las otras réplicas (también si se sumó a un pendiente)
+            return submission;
+        }
+        ReindexJob job = new ReindexJob(newId(), ReindexJob.Trigger.MANUAL, force, Instant.now(), lease.instanceId());
+        if (!store.enqueue(job)) {
+            throw new IllegalStateException("No se pudo dejar el pedido para el líder (" + lease.currentHolder() + ")");
+        }
+        return new Submission(job, false, true);
+    }
+
+    /** Estado de un job: el local si lo corre esta réplica, si no el del historial compartido. */
+    public Optional<Map<String, Object>> status(String id) {
+        Optional<ReindexJob> local = findLocal(id);
+        if (local.isPresent()) return Optional.of(local.get().status());
+
+        Map<String, Object> doc = store.find(id);
+        if (doc == null) return Optional.empty();
+        // pedido sumado a otro job: se responde con el estado de ese job
+        Object into = doc.get("coalescedInto");
+        if (ReindexJob.State.COALESCED.name().equals(doc.get("state")) && into != null) {
+            Optional<Map<String, Object>> target = findLocal(String.valueOf(into)).map(ReindexJob::status)
+                    .or(() -> Optional.ofNullable(store.find(String.valueOf(into))));
+            if (target.isPresent()) {
+                Map<String, Object> resolved = new LinkedHashMap<>(target.get());
+                resolved.put("requestId", id);
+                return Optional.of(resolved);
+            }
+        }
+        return Optional.of(doc);
+    }
+
+    /**
+     * Pide cancelar un job que no terminó. Si lo corre esta réplica se marca directo;
+     * si no, se marca en el historial compartido y el líder lo ve en su próxima sincronización.
+     *
+     * @return false si ya había terminado o no se pudo pedir
+     */
+    public boolean cancel(String id) {
+        Optional<ReindexJob> local = findLocal(id);
+        if (local.isPresent()) return local.get().cancel();
+        return store.requestCancel(id);
+    }
+
+    /** Últimos jobs (el más reciente primero), con el estado en vivo de los que corre esta réplica. */
+    public List<Map<String, Object>> history() {
+        Map<String, Map<String, Object>> merged = new LinkedHashMap<>();
+        for (Map<String, Object> doc : store.recent(historySize)) {
+            merged.put(String.valueOf(doc.get("id")), doc);
+        }
+        for (ReindexJob job : localHistory()) {
+            merged.put(job.id(), job.status());
+        }
+        List<Map<String, Object>> jobs = new ArrayList<>(merged.values());
+        jobs.sort(Comparator.comparing((Map<String, Object> j) -> Instant.parse(String.valueOf(j.get("createdAt")))).reversed());
+        return jobs.size() > historySize ? jobs.subList(0, historySize) : jobs;
+    }
+
+    /**
+     * ⏰ Reindexación automática cada 30 segundos
+     * (no corre hasta que el DataLoader terminó la carga inicial, para no duplicarla,
+     * y sólo en la réplica que tiene el lease de líder)
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void autoReindex() {
+        if (!readiness.isReady() || !lease.isLeader()) return;
+        submit(ReindexJob.Trigger.SCHEDULED, false);
+    }
+
+    /**
+     * 🔁 Mientras el líder tiene jobs en curso: guarda su avance en el historial compartido
+     * y aplica las cancelaciones pedidas en otras réplicas. Sin jobs (o sólo con una
+     * corrida periódica que todavía no trajo cambios) no toca Elasticsearch.
+     */
+    @Scheduled(fixedDelayString = "${buscador.reindex.sync-ms:2000}")
+    public void sync() {
+        if (!lease.isLeader()) return;
+
+        for (ReindexJob job : activeLocal()) {
+            if (job.silent()) continue;
+            Map<String, Object> doc = job.persisted() ? store.find(job.id()) : null;
+            if (doc != null && Boolean.TRUE.equals(doc.get("cancelRequested"))) job.cancel();
+            store.save(job);
+        }
+    }
+
+    /**
+     * 📬 Revisa la cola compartida (sólo el líder): toma los pedidos que dejaron otras
+     * réplicas y da por perdidos los que quedaron RUNNING de un líder anterior.
+     * Es una búsqueda por vuelta, así que va mucho más espaciada que {@link #sync()}.
+     */
+    @Scheduled(fixedDelayString = "${buscador.reindex.queue-poll-ms:30000}")
+    public void pollQueue() {
+        if (!lease.isLeader()) return;
+
+        for (Map<String, Object> doc : store.active()) {
+            String id = String.valueOf(doc.get("id"));
+            if (findLocal(id).isPresent()) continue;
+            if (ReindexJob.State.RUNNING.name().equals(doc.get("state"))) {
+                store.markFailed(id, "El líder que la corría (" + doc.get("instance") + ") dejó de serlo");
+            } else {
+                adopt(id, doc);
+            }
+        }
+    }
+
+    private void adopt(String id, Map<String, Object> doc) {
+        if (Boolean.TRUE.equals(doc.get("cancelRequested"))) {
+            store.update(id, Map.of("state", ReindexJob.State.CANCELLED.name(), "finishedAt", Instant.now().toString()));
+            return;
+        }
+        ReindexJob.Trigger trigger = ReindexJob.Trigger.valueOf(String.valueOf(doc.getOrDefault("trigger", "MANUAL")));
+        boolean force = Boolean.TRUE.equals(doc.get("force"));
+        Instant createdAt = doc.get("createdAt") != null ? Instant.parse(String.valueOf(doc.get("createdAt"))) : Instant.now();
+        String requestedBy = doc.get("requestedBy") == null ? null : String.valueOf(doc.get("requestedBy"));
+
+        Submission submission = submitLocal(id, trigger, force, createdAt, requestedBy);
+        if (submission.coalesced()) {
+            store.markCoalesced(id, submission.job().id());
+        } else {
+            store.save(submission.job());
+        }
+    }
+
+    private synchronized Submission submitLocal(String id, ReindexJob.Trigger trigger, boolean force,
+                                                Instant createdAt, String requestedBy) {
+        if (pending != null) {
+            pending.absorb(force);
+            return new Submission(pending, true, false);
+        }
+        ReindexJob job = new ReindexJob(id, trigger, force, createdAt, requestedBy);
+        history.addFirst(job);
+        while (history.size() > historySize) history.removeLast();
+        if (current != null && !current.isFinished()) {
+            pending = job; // el ejecutor es de un solo hilo: arranca cuando termine el actual
+        } else {
+            current = job;
+        }
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            job.fail(e); // el contexto se está cerrando
+        }
+        return new Submission(job, false, false);
+    }
+
+    private void run(ReindexJob job) {
+        long token;
+        synchronized (this) {
+            if (job == pending) {
+                pending = null; // desde acá los disparadores nuevos arman otro pendiente
+                current = job;
+            }
+            if (job.cancelRequested()) {
+                job.cancelled();
+                token = 0;
+            } else if ((token = lease.fencingToken()) <= 0) {
+                // perdimos el lease antes de arrancar: que lo corra el líder nuevo
+                job.handOff();
+                history.remove(job);
+            } else {
+                job.start(lease.instanceId());
+            }
+        }
+        if (job.state() != ReindexJob.State.RUNNING) {
+            store.save(job);
+            return;
+        }
+        // una corrida periódica se guarda recién si el Operador trae cambios (ver sync)
+        if (!job.silent()) store.save(job);
+
+        try {
+            ReindexResult result = indexService.reindexAsLeader(token, job.force(), job);
+            job.finish(result);
+            log(job, result);
+        } catch (Exception e) {
+            System.err.println("❌ Error en la reindexación " + job.id() + ": " + e.getMessage());
+            job.fail(e);
+        }
+
+        if (job.silent() && job.state() == ReindexJob.State.NOT_MODIFIED) {
+            // una cada 30 segundos taparía al resto del historial
+            synchronized (this) {
+                history.remove(job);
+            }
+            if (job.persisted()) store.delete(job.id());
+            return;
+        }
+        store.save(job);
+        store.trim(historySize);
+    }
+
+    private void log(ReindexJob job, ReindexResult result) {
+        if (result.notModified()) return; // catálogo sin cambios: ni bulk ni log
+        String what = job.trigger() == ReindexJob.Trigger.SCHEDULED ? "Reindexación periódica" : "Reindexación " + job.id();
+        switch (job.state()) {
+            case SUCCEEDED -> System.out.println("✅ " + what + " completada. Productos indexados: " + result.indexed()
+                    + " (sin cambios: " + result.unchanged() + ")");
+            case CANCELLED -> System.out.println("🛑 " + what + " cancelada tras " + result.indexed() + " indexados.");
+            default -> System.out.println("⚠️ " + what + " falló: " + job.status().get("error"));
+        }
+    }
+
+    private String newId() {
+        return idPrefix + sequence.incrementAndGet();
+    }
+
+    private synchronized Optional<ReindexJob> findLocal(String id) {
+        return history.stream().filter(j -> j.id().equals(id)).findFirst();
+    }
+
+    private synchronized List<ReindexJob> localHistory() {
+        return new ArrayList<>(history);
+    }
+
+    private synchronized List<ReindexJob> activeLocal() {
+        List<ReindexJob> active = new ArrayList<>(2);
+        if (current != null && !current.isFinished()) active.add(current);
+        if (pending != null) active.add(pending);
+        return active;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        activeLocal().forEach(ReindexJob::cancel);
+        executor.shutdown();
+    }
+}
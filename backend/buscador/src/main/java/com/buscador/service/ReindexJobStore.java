@@ -0,0 +1,185 @@
+package com.buscador.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🗂️ Historial compartido de jobs de reindexación, en Elasticsearch ({@value #JOBS_INDEX}).
+ *
+ * El gateway reparte /buscador/** entre réplicas, así que el estado de un job tiene que
+ * poder leerse desde cualquiera. El líder guarda ahí sus jobs (un documento por id);
+ * las demás réplicas dejan en estado QUEUED los pedidos manuales que reciben, para que
+ * el líder los tome, y marcan cancelRequested cuando les piden cancelar.
+ *
+ * Los errores de Elasticsearch se loguean y no cortan la reindexación: el historial
+ * compartido es informativo, el job sigue corriendo en el líder.
+ */
+@Service
+public class ReindexJobStore {
+
+    static final String JOBS_INDEX = "buscador_reindex_jobs";
+
+    private final RestTemplate elasticRest;
+
+    @Value("${elasticsearch.url}")
+    private String elasticUrl;
+
+    @Value("${elasticsearch.apiKey}")
+    private String elasticApiKey;
+
+    public ReindexJobStore(@Qualifier("elasticRest") RestTemplate elasticRest) {
+        this.elasticRest = elasticRest;
+    }
+
+    /**
+     * Crea o actualiza el documento del job. cancelRequested sólo se escribe si es true:
+     * así no se pisa una cancelación que otra réplica acaba de pedir.
+     */
+    public void save(ReindexJob job) {
+        Map<String, Object> doc = new LinkedHashMap<>(job.status());
+        if (!job.cancelRequested()) doc.remove("cancelRequested");
+        if (update(job.id(), doc, true)) job.markPersisted();
+    }
+
+    /** Deja un pedido en cola para el líder. */
+    public boolean enqueue(ReindexJob job) {
+        String url = elasticUrl + "/" + JOBS_INDEX + "/_create/" + job.id() + "?refresh=wait_for";
+        try {
+            elasticRest.exchange(url, HttpMethod.PUT, new HttpEntity<>(job.status(), jsonHeaders()), String.class);
+            return true;
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo encolar el job " + job.id() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Actualización parcial de campos (merge). */
+    public boolean update(String id, Map<String, Object> fields) {
+        return update(id, fields, false);
+    }
+
+    public boolean requestCancel(String id) {
+        return update(id, Map.of("cancelRequested", true));
+    }
+
+    public void markCoalesced(String id, String into) {
+        update(id, Map.of("state", ReindexJob.State.COALESCED.name(), "coalescedInto", into,
+                "finishedAt", Instant.now().toString()));
+    }
+
+    public void markFailed(String id, String error) {
+        update(id, Map.of("state", ReindexJob.State.FAILED.name(), "error", error,
+                "finishedAt", Instant.now().toString()));
+    }
+
+    public void delete(String id) {
+        try {
+            elasticRest.exchange(elasticUrl + "/" + JOBS_INDEX + "/_doc/" + id, HttpMethod.DELETE,
+                    new HttpEntity<>(jsonHeaders()), String.class);
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo borrar el job " + id + " del historial: " + e.getMessage());
+        }
+    }
+
+    /** Documento del job, o null si no existe (o Elasticsearch no responde). */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> find(String id) {
+        String url = elasticUrl + "/" + JOBS_INDEX + "/_doc/" + id;
+        try {
+            ResponseEntity<Map> resp = elasticRest.exchange(url, HttpMethod.GET, new HttpEntity<>(jsonHeaders()), Map.class);
+            Map<String, Object> body = resp.getBody();
+            if (body == null || !Boolean.TRUE.equals(body.get("found"))) return null;
+            return withDefaults((Map<String, Object>) body.get("_source"));
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        } catch (Exception e) {
+            System.err.println("⚠️ Historial de jobs no disponible: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Los n jobs más recientes, el más nuevo primero. */
+    public List<Map<String, Object>> recent(int n) {
+        return search(Map.of("match_all", Map.of()), "desc", 0, n);
+    }
+
+    /** Jobs QUEUED o RUNNING, el más viejo primero (para que el líder los tome o los dé por perdidos). */
+    public List<Map<String, Object>> active() {
+        Map<String, Object> query = Map.of("terms", Map.of("state.keyword",
+                List.of(ReindexJob.State.QUEUED.name(), ReindexJob.State.RUNNING.name())));
+        return search(query, "asc", 0, 50);
+    }
+
+    /** Borra todo lo que quedó más atrás de los {@code keep} jobs más recientes. */
+    public void trim(int keep) {
+        List<Map<String, Object>> oldest = search(Map.of("match_all", Map.of()), "desc", keep, 1);
+        if (oldest.isEmpty()) return;
+        Map<String, Object> query = Map.of("query",
+                Map.of("range", Map.of("createdAt", Map.of("lte", oldest.get(0).get("createdAt")))));
+        try {
+            elasticRest.postForObject(elasticUrl + "/" + JOBS_INDEX + "/_delete_by_query?conflicts=proceed",
+                    new HttpEntity<>(query, jsonHeaders()), String.class);
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo recortar el historial de jobs: " + e.getMessage());
+        }
+    }
+
+    private boolean update(String id, Map<String, Object> fields, boolean upsert) {
+        String url = elasticUrl + "/" + JOBS_INDEX + "/_update/" + id + "?retry_on_conflict=3";
+        Map<String, Object> body = upsert ? Map.of("doc", fields, "doc_as_upsert", true) : Map.of("doc", fields);
+        try {
+            elasticRest.postForObject(url, new HttpEntity<>(body, jsonHeaders()), String.class);
+            return true;
+        } catch (HttpClientErrorException.NotFound e) {
+            return false;
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo guardar el job " + id + " en el historial: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> search(Map<String, Object> query, String order, int from, int size) {
+        Map<String, Object> body = Map.of(
+                "query", query,
+                "from", from,
+                "size", size,
+                // unmapped_type: el índice puede no existir o estar vacío todavía
+                "sort", List.of(Map.of("createdAt", Map.of("order", order, "unmapped_type", "date"))));
+        String url = elasticUrl + "/" + JOBS_INDEX + "/_search?ignore_unavailable=true";
+        List<Map<String, Object>> docs = new ArrayList<>();
+        try {
+            Map<String, Object> resp = elasticRest.postForObject(url, new HttpEntity<>(body, jsonHeaders()), Map.class);
+            Map<String, Object> hits = resp == null ? Map.of() : (Map<String, Object>) resp.getOrDefault("hits", Map.of());
+            for (Map<String, Object> hit : (List<Map<String, Object>>) hits.getOrDefault("hits", List.of())) {
+                docs.add(withDefaults((Map<String, Object>) hit.get("_source")));
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ Historial de jobs no disponible: " + e.getMessage());
+        }
+        return docs;
+    }
+
+    private static Map<String, Object> withDefaults(Map<String, Object> source) {
+        Map<String, Object> doc = new LinkedHashMap<>(source);
+        doc.putIfAbsent("cancelRequested", false);
+        return doc;
+    }
+
+    private HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Authorization", "ApiKey " + elasticApiKey);
+        return headers;
+    }
+}
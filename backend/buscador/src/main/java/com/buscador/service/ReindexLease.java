@@ -0,0 +1,269 @@
+package com.buscador.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 👑 Lease de líder para la reindexación programada.
+ *
+ * Un único documento en Elasticsearch ({@value #LEASE_INDEX}/{@value #LEASE_ID}) guarda
+ * quién es el líder, hasta cuándo y con qué fencing token. Todas las escrituras usan
+ * if_seq_no/if_primary_term, así que dos réplicas nunca pueden tomarlo a la vez.
+ * Si el líder deja de renovar, otra réplica lo toma al expirar y sube el token.
+ *
+ * El líder además publica en el lease la generación del índice tras cada reindexación;
+ * sólo se acepta si el token sigue siendo el vigente (un líder viejo queda "fenced").
+ * Las demás réplicas ven el cambio en su heartbeat y reciben un {@link IndexGenerationEvent}.
+ *
+ * Las expiraciones se comparan con el reloj local de cada réplica; el TTL tiene que ser
+ * bastante mayor que el desfase de relojes esperable.
+ */
+@Service
+public class ReindexLease implements HealthIndicator {
+
+    static final String LEASE_INDEX = "buscador_leases";
+    static final String LEASE_ID = "reindex";
+
+    private final RestTemplate elasticRest;
+    private final ApplicationEventPublisher events;
+    private final String instanceId;
+
+    @Value("${elasticsearch.url}")
+    private String elasticUrl;
+
+    @Value("${elasticsearch.apiKey}")
+    private String elasticApiKey;
+
+    @Value("${buscador.lease.ttl-ms:45000}")
+    private long ttlMs;
+
+    private volatile long fencingToken = -1;     // > 0 mientras esta réplica es líder
+    private volatile long localExpiresAt = 0;    // a partir de aquí dejamos de considerarnos líder
+    private volatile long knownGeneration = 0;
+    private volatile String currentHolder;
+
+    public ReindexLease(@Qualifier("elasticRest") RestTemplate elasticRest,
+                        ApplicationEventPublisher events,
+                        @Value("${buscador.instance-id:}") String configuredId) {
+        this.elasticRest = elasticRest;
+        this.events = events;
+        this.instanceId = (configuredId == null || configuredId.isBlank())
+                ? hostName() + "-" + UUID.randomUUID().toString().substring(0, 8)
+                : configuredId;
+    }
+
+    /**
+     * ⏰ Heartbeat: renueva el lease si somos líder, lo toma si expiró,
+     * y detecta nuevas generaciones publicadas por el líder.
+     */
+    @Scheduled(fixedDelayString = "${buscador.lease.renew-ms:10000}")
+    public void heartbeat() {
+        tryAcquireOrRenew();
+    }
+
+    public boolean isLeader() {
+        return fencingToken > 0 && System.currentTimeMillis() < localExpiresAt;
+    }
+
+    /** Token del líder actual de esta réplica, o -1 si no lo es. */
+    public long fencingToken() {
+        return isLeader() ? fencingToken : -1;
+    }
+
+    public long currentGeneration() {
+        return knownGeneration;
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+
+    /** Última réplica que vimos como dueña del lease (puede ser esta). */
+    public String currentHolder() {
+        return currentHolder;
+    }
+
+    /**
+     * @return true si al terminar esta réplica tiene el lease
+     */
+    public synchronized boolean tryAcquireOrRenew() {
+        long now = System.currentTimeMillis();
+        try {
+            LeaseDoc doc = read();
+            if (doc == null) {
+                return create(now);
+            }
+            currentHolder = doc.holder;
+            observeGeneration(doc);
+
+            boolean mine = instanceId.equals(doc.holder) && doc.token == fencingToken;
+            if (!mine && doc.expiresAt > now) {
+                stepDown();
+                return false;
+            }
+            long token = mine ? doc.token : doc.token + 1;
+            return write(doc, token, doc.generation, now);
+        } catch (Exception e) {
+            System.err.println("⚠️ Lease de reindexación no disponible: " + e.getMessage());
+            // sin Elasticsearch no podemos renovar: seguimos siendo líder sólo hasta la expiración local
+            if (fencingToken > 0 && now >= localExpiresAt) stepDown();
+            return isLeader();
+        }
+    }
+
+    /**
+     * Publica una nueva generación del índice. Sólo tiene efecto si el lease
+     * sigue en manos de esta réplica con el mismo token con el que se reindexó.
+     *
+     * @return la generación publicada, o -1 si el token ya no es válido
+     */
+    public synchronized long publishGeneration(long token) {
+        if (token <= 0) return -1;
+        long now = System.currentTimeMillis();
+        try {
+            LeaseDoc doc = read();
+            if (doc == null || !instanceId.equals(doc.holder) || doc.token != token) {
+                System.err.println("⛔ Generación descartada: el token " + token + " ya no es el vigente.");
+                stepDown();
+                return -1;
+            }
+            long generation = doc.generation + 1;
+            if (!write(doc, token, generation, now)) return -1;
+            knownGeneration = generation;
+            events.publishEvent(new IndexGenerationEvent(generation, token, true));
+            return generation;
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo publicar la generación: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public Health health() {
+        return Health.up()
+                .withDetail("instance", instanceId)
+                .withDetail("leader", isLeader())
+                .withDetail("holder", String.valueOf(currentHolder))
+                .withDetail("fencingToken", fencingToken)
+                .withDetail("generation", knownGeneration)
+                .build();
+    }
+
+    private void observeGeneration(LeaseDoc doc) {
+        if (doc.generation > knownGeneration) {
+            knownGeneration = doc.generation;
+            events.publishEvent(new IndexGenerationEvent(doc.generation, doc.token, false));
+        }
+    }
+
+    private boolean create(long now) {
+        String url = elasticUrl + "/" + LEASE_INDEX + "/_create/" + LEASE_ID;
+        try {
+            elasticRest.exchange(url, HttpMethod.PUT, new HttpEntity<>(source(1, 0, now), jsonHeaders()), String.class);
+            becomeLeader(1, now);
+            return true;
+        } catch (HttpClientErrorException.Conflict e) {
+            return false; // otra réplica lo creó primero
+        }
+    }
+
+    private boolean write(LeaseDoc current, long token, long generation, long now) {
+        String url = elasticUrl + "/" + LEASE_INDEX + "/_doc/" + LEASE_ID
+                + "?if_seq_no=" + current.seqNo + "&if_primary_term=" + current.primaryTerm;
+        try {
+            elasticRest.exchange(url, HttpMethod.PUT, new HttpEntity<>(source(token, generation, now), jsonHeaders()), String.class);
+            becomeLeader(token, now);
+            return true;
+        } catch (HttpClientErrorException.Conflict e) {
+            stepDown(); // alguien escribió el lease entre nuestra lectura y la escritura
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private LeaseDoc read() {
+        String url = elasticUrl + "/" + LEASE_INDEX + "/_doc/" + LEASE_ID;
+        try {
+            ResponseEntity<Map> resp = elasticRest.exchange(url, HttpMethod.GET, new HttpEntity<>(jsonHeaders()), Map.class);
+            Map<String, Object> body = resp.getBody();
+            if (body == null || !Boolean.TRUE.equals(body.get("found"))) return null;
+            Map<String, Object> src = (Map<String, Object>) body.get("_source");
+            LeaseDoc doc = new LeaseDoc();
+            doc.seqNo = ((Number) body.get("_seq_no")).longValue();
+            doc.primaryTerm = ((Number) body.get("_primary_term")).longValue();
+            doc.holder = (String) src.get("holder");
+            doc.token = ((Number) src.get("token")).longValue();
+            doc.expiresAt = ((Number) src.get("expires_at")).longValue();
+            doc.generation = src.get("generation") instanceof Number n ? n.longValue() : 0;
+            return doc;
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        }
+    }
+
+    private Map<String, Object> source(long token, long generation, long now) {
+        Map<String, Object> src = new HashMap<>();
+        src.put("holder", instanceId);
+        src.put("token", token);
+        src.put("expires_at", now + ttlMs);
+        src.put("generation", generation);
+        src.put("renewed_at", now);
+        return src;
+    }
+
+    private void becomeLeader(long token, long now) {
+        if (fencingToken != token) {
+            System.out.println("👑 " + instanceId + " es líder de reindexación (token " + token + ").");
+        }
+        fencingToken = token;
+        localExpiresAt = now + ttlMs;
+        currentHolder = instanceId;
+    }
+
+    private void stepDown() {
+        if (fencingToken > 0) {
+            System.out.println("👋 " + instanceId + " deja de ser líder de reindexación (token " + fencingToken + ").");
+        }
+        fencingToken = -1;
+        localExpiresAt = 0;
+    }
+
+    private HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Authorization", "ApiKey " + elasticApiKey);
+        return headers;
+    }
+
+    private static String hostName() {
+        String env = System.getenv("HOSTNAME");
+        if (env != null && !env.isBlank()) return env;
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "buscador";
+        }
+    }
+
+    private static class LeaseDoc {
+        long seqNo;
+        long primaryTerm;
+        String holder;
+        long token;
+        long expiresAt;
+        long generation;
+    }
+}
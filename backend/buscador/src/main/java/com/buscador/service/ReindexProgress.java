@@ -0,0 +1,24 @@
+package com.buscador.service;
+
+/**
+ * Avance de una reindexación en curso. {@link IndexService} lo va notificando por
+ * lotes de _bulk y, entre lote y lote, consulta si se pidió cancelar.
+ */
+public interface ReindexProgress {
+
+    /** Para reindexaciones sin seguimiento. */
+    ReindexProgress NONE = new ReindexProgress() {
+    };
+
+    /** Productos recibidos del Operador (se llama una vez, antes del primer lote). */
+    default void fetched(int products) {
+    }
+
+    /** Incrementos de un lote ya enviado a Elasticsearch. */
+    default void processed(int indexed, int unchanged, int deleted, int failed) {
+    }
+
+    default boolean cancelRequested() {
+        return false;
+    }
+}
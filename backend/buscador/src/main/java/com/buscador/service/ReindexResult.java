@@ -0,0 +1,29 @@
+package com.buscador.service;
+
+/**
+ * Resultado de una reindexación.
+ *
+ * @param notModified el Operador respondió 304: el catálogo no cambió desde la última vez
+ * @param fetched     productos recibidos del Operador
+ * @param indexed     documentos enviados y aceptados por Elasticsearch
+ * @param unchanged   documentos omitidos porque su hash no cambió
+ * @param deleted     documentos borrados porque ya no están en el catálogo
+ * @param failed      documentos que Elasticsearch rechazó o no se pudieron serializar
+ * @param cancelled   se canceló antes de mandar todos los lotes (lo ya enviado queda indexado)
+ */
+public record ReindexResult(boolean notModified, int fetched, int indexed, int unchanged, int deleted, int failed,
+                            boolean cancelled) {
+
+    static ReindexResult empty() {
+        return new ReindexResult(false, 0, 0, 0, 0, 0, false);
+    }
+
+    static ReindexResult notModifiedResult() {
+        return new ReindexResult(true, 0, 0, 0, 0, 0, false);
+    }
+
+    /** true si el índice quedó distinto que antes (hay una generación nueva que anunciar). */
+    public boolean changed() {
+        return indexed > 0 || deleted > 0;
+    }
+}
@@ -0,0 +1,113 @@
+package com.buscador.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 🧱 Cuerpos de búsqueda para Elasticsearch, compartidos por /search, /suggest,
+ * /facets y la página combinada (_msearch). El texto del usuario siempre se
+ * escapa como string JSON.
+ */
+@Component
+public class SearchQueries {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Búsqueda principal (multi_match con boost en nombre y descripción). */
+    public String search(String q, int size) {
+        return """
+                {
+                  "size": %d,
+                  "query": {
+                    "multi_match": {
+                      "query": %s,
+                      "fields": ["nombre^3", "descripcion^2", "categoria", "subcategoria"]
+                    }
+                  }
+                }
+                """.formatted(size, quote(q));
+    }
+
+    /** Autocompletado sobre el campo search_as_you_type. */
+    public String suggest(String q) {
+        return """
+                {
+                  "size": 5,
+                  "query": {
+                    "multi_match": {
+                      "query": %s,
+                      "type": "bool_prefix",
+                      "fields": ["nombre.suggest", "nombre.suggest._2gram", "nombre.suggest._3gram"]
+                    }
+                  }
+                }
+                """.formatted(quote(q));
+    }
+
+    // mismas agregaciones con y sin q, para que /facets y /page devuelvan siempre la misma forma
+    private static final String FACET_AGGS = """
+            {
+              "categorias": { "terms": { "field": "categoria.keyword" } },
+              "subcategorias": { "terms": { "field": "subcategoria.keyword" } }
+            }""";
+
+    /** Facetas por categoría y subcategoría; con q, sólo sobre los productos que matchean la búsqueda. */
+    public String facets(String q) {
+        if (q == null || q.isBlank()) {
+            return """
+                    { "size": 0, "aggs": %s }
+                    """.formatted(FACET_AGGS);
+        }
+        return """
+                {
+                  "size": 0,
+                  "query": {
+                    "multi_match": {
+                      "query": %s,
+                      "fields": ["nombre^3", "descripcion^2", "categoria", "subcategoria"]
+                    }
+                  },
+                  "aggs": %s
+                }
+                """.formatted(quote(q), FACET_AGGS);
+    }
+
+    /** "Quisiste decir": term suggester sobre nombre, sólo términos más frecuentes que el escrito. */
+    public String didYouMean(String q) {
+        return """
+                {
+                  "size": 0,
+                  "suggest": {
+                    "didyoumean": {
+                      "text": %s,
+                      "term": { "field": "nombre", "suggest_mode": "popular", "size": 1 }
+                    }
+                  }
+                }
+                """.formatted(quote(q));
+    }
+
+    /**
+     * Cuerpo NDJSON para /productos/_msearch: una cabecera vacía (usa el índice de la URL)
+     * y el cuerpo en una sola línea por cada búsqueda.
+     */
+    public String msearch(List<String> bodies) {
+        StringBuilder sb = new StringBuilder();
+        for (String body : bodies) {
+            // los saltos de línea sólo pueden estar fuera de strings (el texto del usuario va escapado)
+            sb.append("{}\n").append(body.replace('\n', ' ').trim()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String quote(String text) {
+        try {
+            return mapper.writeValueAsString(text == null ? "" : text);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
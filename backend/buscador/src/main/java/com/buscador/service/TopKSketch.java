@@ -0,0 +1,102 @@
+package com.buscador.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Top-K aproximado de claves frecuentes, sin locks.
+ *
+ * Las frecuencias las estima un Count-Min sketch (AtomicLongArray, memoria fija).
+ * Además se guarda un conjunto pequeño de candidatos (hasta 2·K) con su estimación;
+ * una clave nueva sólo entra si su estimación supera el piso actual. Cuando el
+ * conjunto se llena, un único hilo (CAS sobre {@code pruning}) lo recorta a K y sube
+ * el piso; los demás siguen sin esperar. Los conteos son aproximados por diseño.
+ */
+public class TopKSketch {
+
+    private static final int DEPTH = 4;
+
+    private final int k;
+    private final int capacity;
+    private final int width;
+    private final AtomicLongArray counts;
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private volatile long admissionFloor = 0;
+
+    public record Entry(String key, long count) {
+    }
+
+    public TopKSketch(int k, int width) {
+        this.k = k;
+        this.capacity = 2 * k;
+        this.width = width;
+        this.counts = new AtomicLongArray(DEPTH * width);
+    }
+
+    public void add(String key) {
+        long estimate = increment(key);
+        if (candidates.containsKey(key) || estimate > admissionFloor || candidates.size() < capacity) {
+            candidates.put(key, estimate);
+            if (candidates.size() > capacity) prune();
+        }
+    }
+
+    /** Las n claves más frecuentes, de mayor a menor. */
+    public List<Entry> top(int n) {
+        List<Entry> entries = new ArrayList<>(candidates.size());
+        candidates.forEach((key, count) -> entries.add(new Entry(key, count)));
+        entries.sort(Comparator.comparingLong(Entry::count).reversed());
+        return entries.size() > n ? entries.subList(0, n) : entries;
+    }
+
+    /** Divide todos los conteos por 2, para que el ranking siga al tráfico reciente. */
+    public void decay() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.getAndUpdate(i, v -> v >> 1);
+        }
+        candidates.replaceAll((key, count) -> count >> 1);
+        candidates.values().removeIf(count -> count == 0);
+        admissionFloor = admissionFloor >> 1;
+    }
+
+    private long increment(String key) {
+        int h = key.hashCode();
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int col = Math.floorMod(mix(h + row * 0x9E3779B9), width);
+            min = Math.min(min, counts.incrementAndGet(row * width + col));
+        }
+        return min;
+    }
+
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) return;
+        try {
+            List<Entry> sorted = top(Integer.MAX_VALUE);
+            for (int i = k; i < sorted.size(); i++) {
+                candidates.remove(sorted.get(i).key());
+            }
+            // k = 0 (top-K apagado) o decay() acaba de vaciar los candidatos: no hay piso que subir
+            if (k <= 0 || sorted.isEmpty()) return;
+            admissionFloor = sorted.get(Math.min(k, sorted.size()) - 1).count();
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    // murmur3 fmix32: reparte bien los hashCode de String entre columnas
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
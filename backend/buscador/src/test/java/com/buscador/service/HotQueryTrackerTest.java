@@ -0,0 +1,38 @@
+package com.buscador.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotQueryTrackerTest {
+
+    @Test
+    void normalizePasaAMinusculasSinTildesYColapsaEspacios() {
+        assertEquals("pantalon nino", HotQueryTracker.normalize("  Pantalón\t NIÑO \n"));
+        assertEquals("cafe", HotQueryTracker.normalize("Café"));
+    }
+
+    @Test
+    void normalizeDeNuloOVacioEsVacio() {
+        assertEquals("", HotQueryTracker.normalize(null));
+        assertEquals("", HotQueryTracker.normalize("   "));
+    }
+
+    @Test
+    void normalizeCortaA100Caracteres() {
+        assertEquals(100, HotQueryTracker.normalize("a".repeat(150)).length());
+    }
+
+    @Test
+    void variantesDeLaMismaConsultaCuentanJuntas() {
+        HotQueryTracker tracker = new HotQueryTracker(10);
+        tracker.recordSearch("Remera ");
+        tracker.recordSearch("remera");
+        tracker.recordSearch("REMERÁ");
+        tracker.recordSearch("  ");
+
+        assertEquals(1, tracker.topSearches(10).size());
+        assertEquals(new TopKSketch.Entry("remera", 3), tracker.topSearches(1).get(0));
+        assertTrue(tracker.topPrefixes(10).isEmpty());
+    }
+}
@@ -0,0 +1,301 @@
+package com.buscador.service;
+
+import com.buscador.model.ProductoDoc;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * IndexService contra un Operador y un Elasticsearch simulados: el _bulk responde
+ * un item por acción (201 para index, 200 para delete, o el status que se indique por id).
+ */
+class IndexServiceTest {
+
+    private static final String OPERADOR_URL = "http://operador/productos";
+
+    private final RestTemplate operadorRest = mock(RestTemplate.class);
+    private final RestTemplate elasticRest = mock(RestTemplate.class);
+    private final ReindexLease lease = mock(ReindexLease.class);
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Deque<ResponseEntity<ProductoDoc[]>> catalog = new ArrayDeque<>();
+    private final List<HttpHeaders> operadorRequests = new ArrayList<>();
+    private final List<List<String>> bulks = new ArrayList<>();   // acciones de cada _bulk, p. ej. "index:1"
+    private final List<JsonNode> deletesByQuery = new ArrayList<>();
+    private final Map<String, Integer> bulkStatus = new HashMap<>();
+
+    private IndexService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IndexService(operadorRest, elasticRest, lease);
+        ReflectionTestUtils.setField(service, "elasticUrl", "http://es");
+        ReflectionTestUtils.setField(service, "elasticApiKey", "k");
+        ReflectionTestUtils.setField(service, "operadorUrl", OPERADOR_URL);
+        ReflectionTestUtils.setField(service, "bulkFormat", "json");
+        ReflectionTestUtils.setField(service, "bulkSize", 500);
+
+        when(operadorRest.exchange(eq(OPERADOR_URL), eq(HttpMethod.GET), any(HttpEntity.class), eq(ProductoDoc[].class)))
+                .thenAnswer(inv -> {
+                    operadorRequests.add(inv.<HttpEntity<?>>getArgument(2).getHeaders());
+                    return catalog.removeFirst();
+                });
+        when(elasticRest.postForObject(eq("http://es/productos/_bulk"), any(HttpEntity.class), eq(Map.class)))
+                .thenAnswer(inv -> bulk((byte[]) inv.<HttpEntity<?>>getArgument(1).getBody()));
+        when(elasticRest.postForObject(startsWith("http://es/productos/_delete_by_query"), any(HttpEntity.class), eq(Map.class)))
+                .thenAnswer(inv -> {
+                    deletesByQuery.add(mapper.readTree((String) inv.<HttpEntity<?>>getArgument(1).getBody()));
+                    return Map.of("deleted", 0);
+                });
+    }
+
+    @Test
+    void siElTokenDejaDeSerElVigenteSeCortaAntesDelProximoLote() {
+        ReflectionTestUtils.setField(service, "bulkSize", 1);
+        when(lease.fencingToken()).thenReturn(7L, -1L); // vigente en el primer lote, perdido en el segundo
+        catalog.add(ok("v1", producto(1), producto(2), producto(3)));
+
+        ReindexResult result = service.reindexAsLeader(7, true, ReindexProgress.NONE);
+
+        assertTrue(result.cancelled());
+        assertEquals(1, result.indexed());
+        assertEquals(List.of(List.of("index:1")), bulks);
+        assertTrue(deletesByQuery.isEmpty());
+    }
+
+    @Test
+    void unaCorridaCortadaPorElTokenNoGuardaElEtag() {
+        ReflectionTestUtils.setField(service, "bulkSize", 1);
+        when(lease.fencingToken()).thenReturn(7L, -1L, 7L);
+        catalog.add(ok("v1", producto(1), producto(2)));
+        catalog.add(ok("v1", producto(1), producto(2)));
+
+        service.reindexAsLeader(7, false, ReindexProgress.NONE);
+        service.reindexAsLeader(7, false, ReindexProgress.NONE);
+
+        assertTrue(operadorRequests.get(1).getIfNoneMatch().isEmpty());
+    }
+
+    @Test
+    void conElTokenVigenteTerminaYPublicaLaGeneracion() {
+        when(lease.fencingToken()).thenReturn(7L);
+        catalog.add(ok("v1", producto(1), producto(2)));
+
+        ReindexResult result = service.reindexAsLeader(7, true, ReindexProgress.NONE);
+
+        assertFalse(result.cancelled());
+        assertEquals(2, result.indexed());
+        verify(lease).publishGeneration(7);
+    }
+
+    @Test
+    void unTokenNuevoOlvidaEtagYHashes() {
+        catalog.add(ok("v1", producto(1), producto(2)));
+        catalog.add(ok("v1", producto(1), producto(2)));
+
+        when(lease.fencingToken()).thenReturn(7L);
+        service.reindexAsLeader(7, false, ReindexProgress.NONE);
+        when(lease.fencingToken()).thenReturn(8L); // otra réplica fue líder en el medio
+        ReindexResult result = service.reindexAsLeader(8, false, ReindexProgress.NONE);
+
+        assertTrue(operadorRequests.get(1).getIfNoneMatch().isEmpty()); // sin If-None-Match
+        assertEquals(2, result.indexed());                            // los hashes viejos no cuentan
+        assertEquals(2, deletesByQuery.size());                       // y vuelve a purgar
+    }
+
+    @Test
+    void sinCambiosNoSePublicaGeneracion() {
+        when(lease.fencingToken()).thenReturn(7L);
+        catalog.add(ok("v1", producto(1)));
+        catalog.add(notModified());
+
+        service.reindexAsLeader(7, false, ReindexProgress.NONE);
+        clearInvocations(lease);
+        ReindexResult result = service.reindexAsLeader(7, false, ReindexProgress.NONE);
+
+        assertTrue(result.notModified());
+        verify(lease, never()).publishGeneration(anyLong());
+    }
+
+    @Test
+    void conElEtagGuardadoUn304NoTocaElasticsearch() {
+        catalog.add(ok("\"v1\"", producto(1), producto(2)));
+        catalog.add(notModified());
+
+        service.reindex(false);
+        clearInvocations(elasticRest);
+        ReindexResult result = service.reindex(false);
+
+        assertEquals(List.of("\"v1\""), operadorRequests.get(1).getIfNoneMatch());
+        assertTrue(result.notModified());
+        assertFalse(result.changed());
+        verifyNoInteractions(elasticRest);
+    }
+
+    @Test
+    void forceNoMandaIfNoneMatch() {
+        catalog.add(ok("\"v1\"", producto(1)));
+        catalog.add(ok("\"v1\"", producto(1)));
+
+        service.reindex(false);
+        ReindexResult result = service.reindex(true);
+
+        assertTrue(operadorRequests.get(1).getIfNoneMatch().isEmpty());
+        assertEquals(1, result.indexed()); // y reenvía aunque el hash no cambió
+    }
+
+    @Test
+    void soloSeMandanLosProductosCuyoHashCambio() {
+        catalog.add(ok("\"v1\"", producto(1), producto(2), producto(3)));
+        catalog.add(ok("\"v2\"", producto(1), producto(2, "Remera nueva"), producto(3)));
+
+        service.reindex(false);
+        ReindexResult result = service.reindex(false);
+
+        assertEquals(List.of("index:2"), bulks.get(1));
+        assertEquals(1, result.indexed());
+        assertEquals(2, result.unchanged());
+    }
+
+    @Test
+    void lasCorridasIncrementalesBorranLoQueSalioDelCatalogo() {
+        catalog.add(ok("\"v1\"", producto(1), producto(2), producto(3)));
+        catalog.add(ok("\"v2\"", producto(1), producto(2)));
+
+        service.reindex(false);
+        ReindexResult result = service.reindex(false);
+
+        assertEquals(List.of("delete:3"), bulks.get(1));
+        assertEquals(1, result.deleted());
+        assertEquals(1, deletesByQuery.size()); // sólo la primera corrida borra por consulta
+    }
+
+    @Test
+    void laPrimeraCorridaYLasForzadasBorranPorConsultaLoQueNoVino() {
+        catalog.add(ok("\"v1\"", producto(1), producto(2)));
+        catalog.add(ok("\"v2\"", producto(1), producto(2)));
+        catalog.add(ok("\"v3\"", producto(2)));
+
+        service.reindex(false);
+        service.reindex(false);
+        service.reindex(true);
+
+        assertEquals(2, deletesByQuery.size());
+        assertEquals(List.of("1", "2"), idsNotDeleted(deletesByQuery.get(0)));
+        assertEquals(List.of("2"), idsNotDeleted(deletesByQuery.get(1)));
+        assertTrue(bulks.stream().flatMap(List::stream).noneMatch(a -> a.startsWith("delete:")));
+    }
+
+    @Test
+    void conDocumentosRechazadosNoSeGuardaElEtag() {
+        bulkStatus.put("2", 400);
+        catalog.add(ok("\"v1\"", producto(1), producto(2)));
+        catalog.add(ok("\"v1\"", producto(1), producto(2)));
+
+        ReindexResult first = service.reindex(false);
+        bulkStatus.clear();
+        ReindexResult second = service.reindex(false);
+
+        assertEquals(1, first.failed());
+        assertTrue(operadorRequests.get(1).getIfNoneMatch().isEmpty());
+        assertEquals(List.of("index:2"), bulks.get(1)); // el rechazado se reintenta, el aceptado no
+        assertEquals(1, second.unchanged());
+    }
+
+    @Test
+    void unaCorridaCanceladaNoGuardaElEtag() {
+        ReflectionTestUtils.setField(service, "bulkSize", 1);
+        catalog.add(ok("\"v1\"", producto(1), producto(2)));
+        catalog.add(ok("\"v1\"", producto(1), producto(2)));
+        ReindexProgress cancelAfterFirstBatch = new ReindexProgress() {
+            @Override
+            public boolean cancelRequested() {
+                return !bulks.isEmpty();
+            }
+        };
+
+        ReindexResult first = service.reindex(false, cancelAfterFirstBatch);
+        ReindexResult second = service.reindex(false);
+
+        assertTrue(first.cancelled());
+        assertEquals(1, first.indexed());
+        assertTrue(operadorRequests.get(1).getIfNoneMatch().isEmpty());
+        assertEquals(1, second.unchanged()); // lo ya enviado quedó con su hash
+        assertEquals(1, second.indexed());
+    }
+
+    @Test
+    void siFallaElBorradoPorConsultaSeReintentaLaProximaVez() {
+        when(elasticRest.postForObject(startsWith("http://es/productos/_delete_by_query"), any(HttpEntity.class), eq(Map.class)))
+                .thenThrow(new ResourceAccessException("timeout"))
+                .thenReturn(Map.of("deleted", 1));
+        catalog.add(ok("\"v1\"", producto(1)));
+        catalog.add(ok("\"v1\"", producto(1)));
+
+        service.reindex(false);
+        ReindexResult second = service.reindex(false);
+
+        assertTrue(operadorRequests.get(1).getIfNoneMatch().isEmpty());
+        assertEquals(1, second.deleted());
+        verify(elasticRest, times(2)).postForObject(startsWith("http://es/productos/_delete_by_query"), any(HttpEntity.class), eq(Map.class));
+    }
+
+    private static List<String> idsNotDeleted(JsonNode deleteByQuery) {
+        List<String> ids = new ArrayList<>();
+        deleteByQuery.at("/query/bool/must_not/ids/values").forEach(id -> ids.add(id.asText()));
+        ids.sort(null);
+        return ids;
+    }
+
+    private Map<String, Object> bulk(byte[] ndjson) throws Exception {
+        List<String> actions = new ArrayList<>();
+        List<Map<String, Object>> items = new ArrayList<>();
+        String[] lines = new String(ndjson).split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode line = mapper.readTree(lines[i]);
+            String op = line.has("index") ? "index" : "delete";
+            String id = line.get(op).get("_id").asText();
+            actions.add(op + ":" + id);
+            if (op.equals("index")) i++; // la línea siguiente es el documento
+            int status = bulkStatus.getOrDefault(id, op.equals("index") ? 201 : 200);
+            items.add(Map.of(op, Map.of("_id", id, "status", status)));
+        }
+        bulks.add(actions);
+        return Map.of("items", items);
+    }
+
+    private static ProductoDoc producto(long id) {
+        return producto(id, "Producto " + id);
+    }
+
+    private static ProductoDoc producto(long id, String nombre) {
+        return new ProductoDoc(id, nombre, "Ropa", "Remeras", 10.0 * id, "desc " + id, null);
+    }
+
+    private static ResponseEntity<ProductoDoc[]> ok(String etag, ProductoDoc... productos) {
+        return ResponseEntity.ok().eTag(etag).body(productos);
+    }
+
+    private static ResponseEntity<ProductoDoc[]> notModified() {
+        return ResponseEntity.status(304).build();
+    }
+}
@@ -0,0 +1,199 @@
+package com.buscador.service;
+
+import com.buscador.bootstrap.IndexReadinessHealthIndicator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReindexJobServiceTest {
+
+    private static final ReindexResult OK = new ReindexResult(false, 5, 5, 0, 0, 0, false);
+
+    private final IndexService indexService = mock(IndexService.class);
+    private final ReindexLease lease = mock(ReindexLease.class);
+    private final ReindexJobStore store = mock(ReindexJobStore.class);
+    private ReindexJobService service;
+
+    @BeforeEach
+    void setUp() {
+        when(lease.isLeader()).thenReturn(true);
+        when(lease.fencingToken()).thenReturn(7L);
+        when(lease.instanceId()).thenReturn("r1");
+        service = new ReindexJobService(indexService, lease, mock(IndexReadinessHealthIndicator.class), store, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void losDisparadoresDuranteUnJobVanAUnUnicoPendienteQueHeredaForce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(indexService.reindexAsLeader(eq(7L), anyBoolean(), any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return OK;
+        });
+
+        ReindexJobService.Submission first = service.submit(ReindexJob.Trigger.SCHEDULED, false);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ReindexJobService.Submission second = service.submit(ReindexJob.Trigger.SCHEDULED, false);
+        ReindexJobService.Submission third = service.request(true);
+
+        assertFalse(second.coalesced());
+        assertNotEquals(first.job().id(), second.job().id());
+        assertTrue(third.coalesced());
+        assertSame(second.job(), third.job());
+        assertTrue(second.job().force());
+
+        release.countDown();
+        second.job().await();
+        assertEquals(ReindexJob.State.SUCCEEDED, first.job().state());
+        assertEquals(ReindexJob.State.SUCCEEDED, second.job().state());
+        verify(indexService).reindexAsLeader(eq(7L), eq(false), same(first.job()));
+        verify(indexService).reindexAsLeader(eq(7L), eq(true), same(second.job()));
+    }
+
+    @Test
+    void losIdsIncluyenLaInstancia() {
+        when(indexService.reindexAsLeader(anyLong(), anyBoolean(), any())).thenReturn(OK);
+
+        ReindexJob job = service.submit(ReindexJob.Trigger.MANUAL, true).job();
+        job.await();
+
+        assertTrue(job.id().startsWith("r1-"));
+        assertEquals(job.status(), service.status(job.id()).orElseThrow());
+    }
+
+    @Test
+    void trasUnReinicioConElMismoInstanceIdLosIdsNoSeRepiten() throws Exception {
+        when(indexService.reindexAsLeader(anyLong(), anyBoolean(), any())).thenReturn(OK);
+        ReindexJob before = service.submit(ReindexJob.Trigger.MANUAL, true).job();
+        before.await();
+
+        Thread.sleep(5);
+        ReindexJobService restarted = new ReindexJobService(indexService, lease,
+                mock(IndexReadinessHealthIndicator.class), store, 20);
+        try {
+            ReindexJob after = restarted.submit(ReindexJob.Trigger.MANUAL, true).job();
+            after.await();
+            assertTrue(after.id().startsWith("r1-"));
+            assertNotEquals(before.id(), after.id());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void fueraDelLiderElPedidoQuedaEnColaParaElLider() {
+        when(lease.isLeader()).thenReturn(false);
+        when(store.enqueue(any())).thenReturn(true);
+
+        ReindexJobService.Submission submission = service.request(true);
+
+        assertTrue(submission.forwarded());
+        assertEquals(ReindexJob.State.QUEUED, submission.job().state());
+        verify(store).enqueue(submission.job());
+        verifyNoInteractions(indexService);
+    }
+
+    @Test
+    void siSePierdeElLeaseAntesDeArrancarSeLoPasaAlNuevoLider() {
+        when(lease.fencingToken()).thenReturn(-1L);
+
+        ReindexJob job = service.submit(ReindexJob.Trigger.MANUAL, true).job();
+        job.await();
+
+        assertEquals(ReindexJob.State.QUEUED, job.state());
+        verify(store).save(job);
+        verifyNoInteractions(indexService);
+    }
+
+    @Test
+    void elLiderTomaLosPedidosDeOtrasReplicas() throws Exception {
+        when(indexService.reindexAsLeader(anyLong(), anyBoolean(), any())).thenReturn(OK);
+        when(store.active()).thenReturn(List.of(Map.of(
+                "id", "r2-1", "state", "QUEUED", "trigger", "MANUAL", "force", true,
+                "createdAt", Instant.now().toString(), "requestedBy", "r2")));
+
+        service.pollQueue();
+
+        Map<String, Object> status = awaitFinished("r2-1");
+        assertEquals(ReindexJob.State.SUCCEEDED.name(), status.get("state"));
+        assertEquals("r2", status.get("requestedBy"));
+        verify(indexService).reindexAsLeader(eq(7L), eq(true), any());
+    }
+
+    @Test
+    void unaCorridaPeriodicaSinCambiosNoEscribeEnElHistorial() throws Exception {
+        when(indexService.reindexAsLeader(anyLong(), anyBoolean(), any())).thenReturn(ReindexResult.notModifiedResult());
+        when(store.find(any())).thenReturn(null);
+
+        ReindexJob job = service.submit(ReindexJob.Trigger.SCHEDULED, false).job();
+        job.await();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.status(job.id()).isPresent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20); // el job sale del historial apenas después de completarse
+        }
+        service.sync();
+
+        assertEquals(ReindexJob.State.NOT_MODIFIED, job.state());
+        assertTrue(service.status(job.id()).isEmpty());
+        verify(store, never()).save(any());
+        verify(store, never()).delete(any());
+        verify(store, never()).active();
+    }
+
+    @Test
+    void unaCorridaPeriodicaConCambiosSeGuarda() {
+        when(indexService.reindexAsLeader(anyLong(), anyBoolean(), any())).thenAnswer(inv -> {
+            inv.<ReindexProgress>getArgument(2).fetched(5);
+            return OK;
+        });
+
+        ReindexJob job = service.submit(ReindexJob.Trigger.SCHEDULED, false).job();
+        job.await();
+
+        assertEquals(ReindexJob.State.SUCCEEDED, job.state());
+        verify(store, timeout(5000)).save(job);
+    }
+
+    @Test
+    void sinJobsEnCursoSyncNoTocaElasticsearch() {
+        service.sync();
+        verifyNoInteractions(store);
+    }
+
+    @Test
+    void unPedidoManualEnElLiderSeGuardaEnseguida() {
+        when(indexService.reindexAsLeader(anyLong(), anyBoolean(), any())).thenReturn(OK);
+
+        ReindexJob job = service.request(true).job();
+
+        verify(store, atLeastOnce()).save(job);
+        job.await();
+    }
+
+    private Map<String, Object> awaitFinished(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        Map<String, Object> status = service.status(id).orElseThrow();
+        while (!ReindexJob.isFinishedState(status.get("state")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            status = service.status(id).orElseThrow();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,61 @@
+package com.buscador.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReindexJobTest {
+
+    @Test
+    void statusInformaAvanceYEtaMientrasCorre() {
+        ReindexJob job = new ReindexJob("r1-1", ReindexJob.Trigger.MANUAL, true, Instant.now(), "r1");
+        job.start("r1");
+        job.fetched(100);
+        job.processed(40, 10, 0, 0);
+
+        Map<String, Object> progress = progress(job);
+        assertEquals(ReindexJob.State.RUNNING.name(), job.status().get("state"));
+        assertEquals(50, progress.get("percent"));
+        assertTrue(progress.containsKey("etaSeconds"));
+    }
+
+    @Test
+    void cortadoSinPedidoDeCancelacionEsFallaNoCancelacion() {
+        ReindexJob job = new ReindexJob("r1-1", ReindexJob.Trigger.SCHEDULED, false, Instant.now(), "r1");
+        job.start("r1");
+        job.finish(new ReindexResult(false, 10, 3, 0, 0, 0, true));
+
+        assertEquals(ReindexJob.State.FAILED, job.state());
+        assertNotNull(job.status().get("error"));
+    }
+
+    @Test
+    void cancelarSoloMientrasNoTermino() {
+        ReindexJob job = new ReindexJob("r1-1", ReindexJob.Trigger.MANUAL, true, Instant.now(), "r1");
+        job.start("r1");
+        assertTrue(job.cancel());
+        job.finish(new ReindexResult(false, 10, 3, 0, 0, 0, true));
+
+        assertEquals(ReindexJob.State.CANCELLED, job.state());
+        assertFalse(job.cancel());
+        assertFalse(progress(job).containsKey("etaSeconds"));
+    }
+
+    @Test
+    void absorberUnPedidoForzadoFuerzaAlPendiente() {
+        ReindexJob job = new ReindexJob("r1-2", ReindexJob.Trigger.SCHEDULED, false, Instant.now(), "r1");
+        job.absorb(false);
+        job.absorb(true);
+
+        assertTrue(job.force());
+        assertEquals(2, job.status().get("coalescedTriggers"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> progress(ReindexJob job) {
+        return (Map<String, Object>) job.status().get("progress");
+    }
+}
@@ -0,0 +1,189 @@
+package com.buscador.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReindexLeaseTest {
+
+    private static final String LEASE_URL = "http://es/buscador_leases/_doc/reindex";
+
+    private final RestTemplate rest = mock(RestTemplate.class);
+    private final ApplicationEventPublisher events = mock(ApplicationEventPublisher.class);
+    private ReindexLease lease;
+
+    @BeforeEach
+    void setUp() {
+        lease = new ReindexLease(rest, events, "r1");
+        ReflectionTestUtils.setField(lease, "elasticUrl", "http://es");
+        ReflectionTestUtils.setField(lease, "elasticApiKey", "k");
+        ReflectionTestUtils.setField(lease, "ttlMs", 45000L);
+    }
+
+    @Test
+    void sinDocumentoLoCreaConTokenUno() {
+        noLease();
+
+        assertTrue(lease.tryAcquireOrRenew());
+
+        assertTrue(lease.isLeader());
+        assertEquals(1, lease.fencingToken());
+        Map<String, Object> body = sentBody("http://es/buscador_leases/_create/reindex");
+        assertEquals("r1", body.get("holder"));
+        assertEquals(1L, body.get("token"));
+    }
+
+    @Test
+    void siOtraReplicaLoCreaPrimeroNoEsLider() {
+        noLease();
+        when(rest.exchange(eq("http://es/buscador_leases/_create/reindex"), eq(HttpMethod.PUT), any(), eq(String.class)))
+                .thenThrow(conflict());
+
+        assertFalse(lease.tryAcquireOrRenew());
+        assertFalse(lease.isLeader());
+        assertEquals(-1, lease.fencingToken());
+    }
+
+    @Test
+    void elLiderRenuevaConElMismoTokenYControlDeConcurrencia() {
+        becomeLeaderWithTokenOne();
+        leaseDoc("r1", 1, System.currentTimeMillis() + 30000, 0, 12, 3);
+
+        assertTrue(lease.tryAcquireOrRenew());
+
+        assertEquals(1, lease.fencingToken());
+        Map<String, Object> body = sentBody(LEASE_URL + "?if_seq_no=12&if_primary_term=3");
+        assertEquals(1L, body.get("token"));
+    }
+
+    @Test
+    void unLeaseVigenteDeOtraReplicaNoSeToca() {
+        leaseDoc("r2", 4, System.currentTimeMillis() + 30000, 0, 12, 3);
+
+        assertFalse(lease.tryAcquireOrRenew());
+
+        assertEquals("r2", lease.currentHolder());
+        verify(rest, never()).exchange(anyString(), eq(HttpMethod.PUT), any(), eq(String.class));
+    }
+
+    @Test
+    void unLeaseExpiradoSeTomaSubiendoElToken() {
+        leaseDoc("r2", 4, System.currentTimeMillis() - 1, 7, 12, 3);
+
+        assertTrue(lease.tryAcquireOrRenew());
+
+        assertEquals(5, lease.fencingToken());
+        Map<String, Object> body = sentBody(LEASE_URL + "?if_seq_no=12&if_primary_term=3");
+        assertEquals(5L, body.get("token"));
+        assertEquals(7L, body.get("generation")); // la generación publicada se conserva
+    }
+
+    @Test
+    void unConflictoAlEscribirLoDejaSinLiderazgo() {
+        becomeLeaderWithTokenOne();
+        leaseDoc("r1", 1, System.currentTimeMillis() + 30000, 0, 12, 3);
+        when(rest.exchange(startsWith(LEASE_URL + "?"), eq(HttpMethod.PUT), any(), eq(String.class)))
+                .thenThrow(conflict());
+
+        assertFalse(lease.tryAcquireOrRenew());
+
+        assertFalse(lease.isLeader());
+        assertEquals(-1, lease.fencingToken());
+    }
+
+    @Test
+    void siOtraReplicaTomoElLeaseSeDejaDeSerLider() {
+        becomeLeaderWithTokenOne();
+        leaseDoc("r2", 2, System.currentTimeMillis() + 30000, 0, 12, 3);
+
+        assertFalse(lease.tryAcquireOrRenew());
+        assertFalse(lease.isLeader());
+    }
+
+    @Test
+    void publicarConElTokenVigenteSubeLaGeneracion() {
+        becomeLeaderWithTokenOne();
+        leaseDoc("r1", 1, System.currentTimeMillis() + 30000, 4, 12, 3);
+
+        assertEquals(5, lease.publishGeneration(1));
+
+        assertEquals(5, lease.currentGeneration());
+        assertEquals(5L, sentBody(LEASE_URL + "?if_seq_no=12&if_primary_term=3").get("generation"));
+        verify(events).publishEvent(new IndexGenerationEvent(5, 1, true));
+    }
+
+    @Test
+    void publicarConUnTokenViejoSeRechazaYDejaDeSerLider() {
+        becomeLeaderWithTokenOne();
+        leaseDoc("r2", 2, System.currentTimeMillis() + 30000, 4, 12, 3); // otra réplica lo tomó
+
+        assertEquals(-1, lease.publishGeneration(1));
+
+        assertFalse(lease.isLeader());
+        verify(rest, never()).exchange(startsWith(LEASE_URL + "?"), eq(HttpMethod.PUT), any(), eq(String.class));
+        verify(events, never()).publishEvent(any(IndexGenerationEvent.class));
+    }
+
+    @Test
+    void publicarSinTokenNoLlegaAElasticsearch() {
+        assertEquals(-1, lease.publishGeneration(-1));
+        verifyNoInteractions(rest);
+    }
+
+    @Test
+    void unaGeneracionNuevaDelLiderSeAvisaALasDemasReplicas() {
+        leaseDoc("r2", 2, System.currentTimeMillis() + 30000, 3, 12, 3);
+
+        lease.tryAcquireOrRenew();
+
+        assertEquals(3, lease.currentGeneration());
+        verify(events).publishEvent(new IndexGenerationEvent(3, 2, false));
+    }
+
+    private void becomeLeaderWithTokenOne() {
+        noLease();
+        assertTrue(lease.tryAcquireOrRenew());
+        clearInvocations(rest);
+    }
+
+    private void noLease() {
+        when(rest.exchange(eq(LEASE_URL), eq(HttpMethod.GET), any(), eq(Map.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null));
+    }
+
+    private void leaseDoc(String holder, long token, long expiresAt, long generation, long seqNo, long primaryTerm) {
+        Map<String, Object> source = new HashMap<>();
+        source.put("holder", holder);
+        source.put("token", token);
+        source.put("expires_at", expiresAt);
+        source.put("generation", generation);
+        Map<String, Object> body = Map.of("found", true, "_seq_no", seqNo, "_primary_term", primaryTerm, "_source", source);
+        doReturn(ResponseEntity.ok(body)).when(rest).exchange(eq(LEASE_URL), eq(HttpMethod.GET), any(), eq(Map.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> sentBody(String url) {
+        ArgumentCaptor<HttpEntity<?>> entity = ArgumentCaptor.forClass(HttpEntity.class);
+        verify(rest).exchange(eq(url), eq(HttpMethod.PUT), entity.capture(), eq(String.class));
+        return (Map<String, Object>) entity.getValue().getBody();
+    }
+
+    private static HttpClientErrorException conflict() {
+        return HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null);
+    }
+}
@@ -0,0 +1,61 @@
+package com.buscador.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchQueriesTest {
+
+    private final SearchQueries queries = new SearchQueries();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void elTextoConComillasYSaltosDeLineaQuedaEscapado() throws Exception {
+        String q = "remera \"talle\" } ], \"size\": 10000\nbuzo\\";
+
+        for (String body : List.of(queries.search(q, 20), queries.suggest(q), queries.facets(q), queries.didYouMean(q))) {
+            JsonNode json = mapper.readTree(body); // JSON válido
+            assertTrue(json.toString().contains(mapper.writeValueAsString(q)), body);
+        }
+        assertEquals(20, mapper.readTree(queries.search(q, 20)).get("size").asInt());
+        assertEquals(q, mapper.readTree(queries.search(q, 20)).at("/query/multi_match/query").asText());
+    }
+
+    @Test
+    void qNuloEsUnStringVacio() throws Exception {
+        assertEquals("", mapper.readTree(queries.search(null, 5)).at("/query/multi_match/query").asText());
+    }
+
+    @Test
+    void msearchArmaUnaCabeceraYUnaLineaPorBusqueda() throws Exception {
+        String q = "gorra \"roja\"\nazul";
+        String ndjson = queries.msearch(List.of(queries.search(q, 20), queries.facets(q), queries.didYouMean(q)));
+
+        assertTrue(ndjson.endsWith("\n"));
+        String[] lines = ndjson.split("\n");
+        assertEquals(6, lines.length);
+        for (int i = 0; i < lines.length; i += 2) {
+            assertEquals("{}", lines[i]);
+            assertTrue(mapper.readTree(lines[i + 1]).isObject());
+        }
+        assertEquals(q, mapper.readTree(lines[1]).at("/query/multi_match/query").asText());
+    }
+
+    @Test
+    void lasFacetasTienenLaMismaFormaConYSinQ() throws Exception {
+        JsonNode sinQ = mapper.readTree(queries.facets(null));
+        JsonNode vacio = mapper.readTree(queries.facets("  "));
+        JsonNode conQ = mapper.readTree(queries.facets("x"));
+
+        assertEquals(sinQ.get("aggs"), conQ.get("aggs"));
+        assertEquals(sinQ, vacio);
+        assertTrue(sinQ.get("aggs").has("categorias"));
+        assertTrue(sinQ.get("aggs").has("subcategorias"));
+        assertFalse(sinQ.has("query"));
+        assertEquals("x", conQ.at("/query/multi_match/query").asText());
+    }
+}
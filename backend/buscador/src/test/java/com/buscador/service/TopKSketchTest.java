@@ -0,0 +1,105 @@
+package com.buscador.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSketchTest {
+
+    @Test
+    void topOrdenaDeMayorAMenor() {
+        TopKSketch sketch = new TopKSketch(10, 2048);
+        add(sketch, "remera", 5);
+        add(sketch, "buzo", 3);
+        add(sketch, "gorra", 1);
+
+        List<TopKSketch.Entry> top = sketch.top(10);
+
+        assertEquals(List.of("remera", "buzo", "gorra"), keys(top));
+        assertEquals(5, top.get(0).count());
+        assertEquals(3, top.get(1).count());
+        assertEquals(1, top.get(2).count());
+    }
+
+    @Test
+    void topRecortaAn() {
+        TopKSketch sketch = new TopKSketch(10, 2048);
+        add(sketch, "a", 3);
+        add(sketch, "b", 2);
+        add(sketch, "c", 1);
+
+        assertEquals(List.of("a", "b"), keys(sketch.top(2)));
+    }
+
+    @Test
+    void alLlenarseRecortaAKySubeElPiso() {
+        TopKSketch sketch = new TopKSketch(2, 2048); // hasta 4 candidatos
+        add(sketch, "h1", 10);
+        add(sketch, "h2", 9);
+        add(sketch, "x1", 1);
+        add(sketch, "x2", 1);
+        add(sketch, "x3", 1); // quinto candidato: se recorta a los 2 más frecuentes, piso = 9
+
+        assertEquals(Set.of("h1", "h2"), Set.copyOf(keys(sketch.top(10))));
+
+        add(sketch, "y1", 1);
+        add(sketch, "y2", 1);
+        assertEquals(4, sketch.top(10).size()); // con lugar libre entran aunque estén bajo el piso
+
+        add(sketch, "z", 1); // lleno y bajo el piso: no entra
+        assertFalse(keys(sketch.top(10)).contains("z"));
+    }
+
+    @Test
+    void unaClaveQueSuperaElPisoEntraYDesplazaALaMenor() {
+        TopKSketch sketch = new TopKSketch(2, 2048);
+        add(sketch, "h1", 10);
+        add(sketch, "h2", 9);
+        add(sketch, "x1", 1);
+        add(sketch, "x2", 1);
+        add(sketch, "x3", 1);
+        add(sketch, "y1", 1);
+        add(sketch, "y2", 1);
+
+        add(sketch, "nueva", 10); // la décima vez supera el piso (9) y fuerza otro recorte
+
+        Set<String> top = Set.copyOf(keys(sketch.top(2)));
+        assertEquals(Set.of("h1", "nueva"), top);
+    }
+
+    @Test
+    void decayDivideLosConteosYDescartaLosQueLleganACero() {
+        TopKSketch sketch = new TopKSketch(10, 2048);
+        add(sketch, "remera", 4);
+        add(sketch, "buzo", 1);
+
+        sketch.decay();
+
+        List<TopKSketch.Entry> top = sketch.top(10);
+        assertEquals(List.of("remera"), keys(top));
+        assertEquals(2, top.get(0).count());
+
+        sketch.add("remera"); // el sketch también quedó a la mitad: 2 + 1
+        assertEquals(3, sketch.top(1).get(0).count());
+    }
+
+    @Test
+    void conKCeroNoFallaYNoGuardaNada() {
+        TopKSketch sketch = new TopKSketch(0, 2048); // buscador.hot-queries.k=0
+
+        assertDoesNotThrow(() -> add(sketch, "remera", 3));
+        assertTrue(sketch.top(10).isEmpty());
+    }
+
+    private static void add(TopKSketch sketch, String key, int times) {
+        for (int i = 0; i < times; i++) sketch.add(key);
+    }
+
+    private static List<String> keys(List<TopKSketch.Entry> entries) {
+        return entries.stream().map(TopKSketch.Entry::key).collect(Collectors.toList());
+    }
+}
@@ -1,9 +1,11 @@
 package com.power.cloud;
 
+import com.power.cloud.lb.InstanceBalancingConfiguration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsWebFilter;
@@ -16,6 +18,7 @@ import java.util.stream.Collectors;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@LoadBalancerClients(defaultConfiguration = InstanceBalancingConfiguration.class) // rutas lb://
 public class CloudGatewayApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,39 @@
+package com.power.cloud.lb;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Configuración de cada cliente de balanceo (un contexto hijo por servicio: buscador, operador).
+ * Sin @Configuration a propósito: la registra @LoadBalancerClients en CloudGatewayApplication
+ * y no debe entrar en el component scan del contexto principal.
+ */
+public class InstanceBalancingConfiguration {
+
+    // instancias de discovery (Eureka o lista estática) filtradas por health check activo;
+    // la lista se vuelve a pedir cada refetch-instances-interval (ver application.yml)
+    @Bean
+    public ServiceInstanceListSupplier healthCheckedInstances(ConfigurableApplicationContext context) {
+        return ServiceInstanceListSupplier.builder()
+                .withDiscoveryClient()
+                .withHealthChecks()
+                .build(context);
+    }
+
+    // tipo concreto para que el filtro del gateway lo encuentre también como LoadBalancerLifecycle
+    @Bean
+    public LeastOutstandingLoadBalancer leastOutstandingLoadBalancer(
+            Environment environment,
+            LoadBalancerClientFactory factory,
+            @Value("${gateway.lb.failures-to-eject:3}") int failuresToEject,
+            @Value("${gateway.lb.ejection-ms:30000}") long ejectionMs) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new LeastOutstandingLoadBalancer(
+                factory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId, failuresToEject, ejectionMs);
+    }
+}
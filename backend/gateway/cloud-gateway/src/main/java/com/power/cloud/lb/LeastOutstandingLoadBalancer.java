@@ -0,0 +1,167 @@
+package com.power.cloud.lb;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.*;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Balanceo por menor carga pendiente con "power of two choices".
+ *
+ * - Elige 2 instancias al azar y se queda con la de menor (peticiones en vuelo + 1) × latencia EWMA.
+ * - Expulsión pasiva: tras N fallos seguidos (error de conexión o 5xx) la instancia queda fuera
+ *   durante un tiempo; si todas están expulsadas se usan igual (mejor eso que un 503 seguro).
+ * - En un reintento del filtro Retry evita la instancia que acaba de fallar, si hay otra.
+ *
+ * Implementa también LoadBalancerLifecycle: el ReactiveLoadBalancerClientFilter nos avisa
+ * cuándo empieza y termina cada petición, y de ahí salen los contadores.
+ */
+public class LeastOutstandingLoadBalancer implements ReactorServiceInstanceLoadBalancer,
+        LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+
+    // atributo del exchange con la última instancia usada (sobrevive a los reintentos del filtro Retry)
+    static final String LAST_INSTANCE_ATTR = LeastOutstandingLoadBalancer.class.getName() + ".lastInstance";
+
+    private static final double EWMA_ALPHA = 0.3;
+    private static final double INITIAL_LATENCY_MS = 50;
+
+    private final ObjectProvider<ServiceInstanceListSupplier> suppliers;
+    private final String serviceId;
+    private final int failuresToEject;
+    private final long ejectionMs;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public LeastOutstandingLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> suppliers, String serviceId,
+                                        int failuresToEject, long ejectionMs) {
+        this.suppliers = suppliers;
+        this.serviceId = serviceId;
+        this.failuresToEject = failuresToEject;
+        this.ejectionMs = ejectionMs;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = suppliers.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> select(instances, previousInstance(request)));
+    }
+
+    private Response<ServiceInstance> select(List<ServiceInstance> instances, String previous) {
+        if (instances.isEmpty()) {
+            System.err.println("⚠️ Sin instancias disponibles para " + serviceId);
+            return new EmptyResponse();
+        }
+        long now = System.currentTimeMillis();
+        List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+        for (ServiceInstance i : instances) {
+            if (stats(i).ejectedUntil <= now) candidates.add(i);
+        }
+        if (candidates.isEmpty()) candidates = new ArrayList<>(instances); // todas expulsadas: modo pánico
+        if (previous != null && candidates.size() > 1) {
+            candidates.removeIf(i -> key(i).equals(previous));
+        }
+
+        ServiceInstance chosen;
+        if (candidates.size() == 1) {
+            chosen = candidates.get(0);
+        } else {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            int a = rnd.nextInt(candidates.size());
+            int b = rnd.nextInt(candidates.size() - 1);
+            if (b >= a) b++;
+            ServiceInstance first = candidates.get(a);
+            ServiceInstance second = candidates.get(b);
+            chosen = stats(first).score() <= stats(second).score() ? first : second;
+        }
+        return new DefaultResponse(chosen);
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) return;
+        stats(lbResponse.getServer()).inFlight.incrementAndGet();
+        request.getContext().setRequestStartTime(System.nanoTime());
+        RequestData data = request.getContext().getClientRequest();
+        if (data != null && data.getAttributes() != null) {
+            data.getAttributes().put(LAST_INSTANCE_ATTR, key(lbResponse.getServer()));
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> ctx) {
+        Response<ServiceInstance> lbResponse = ctx.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()) return;
+        ServiceInstance server = lbResponse.getServer();
+        Stats s = stats(server);
+        s.inFlight.decrementAndGet();
+        if (ctx.status() == CompletionContext.Status.DISCARD) return;
+
+        long start = ctx.getLoadBalancerRequest().getContext().getRequestStartTime();
+        if (start > 0) {
+            double ms = (System.nanoTime() - start) / 1_000_000.0;
+            s.latencyMs = EWMA_ALPHA * ms + (1 - EWMA_ALPHA) * s.latencyMs;
+        }
+
+        ResponseData response = ctx.getClientResponse();
+        boolean failed = ctx.status() == CompletionContext.Status.FAILED
+                || (response != null && response.getHttpStatus() != null && response.getHttpStatus().is5xxServerError());
+        if (!failed) {
+            s.consecutiveFailures.set(0);
+            return;
+        }
+        if (s.consecutiveFailures.incrementAndGet() >= failuresToEject) {
+            s.consecutiveFailures.set(0);
+            s.ejectedUntil = System.currentTimeMillis() + ejectionMs;
+            System.err.println("⛔ " + serviceId + " " + key(server) + " expulsada por " + ejectionMs + " ms tras "
+                    + failuresToEject + " fallos seguidos.");
+        }
+    }
+
+    private Stats stats(ServiceInstance instance) {
+        return stats.computeIfAbsent(key(instance), k -> new Stats());
+    }
+
+    private static String previousInstance(Request request) {
+        if (request.getContext() instanceof RequestDataContext ctx && ctx.getClientRequest() != null
+                && ctx.getClientRequest().getAttributes() != null) {
+            Object last = ctx.getClientRequest().getAttributes().get(LAST_INSTANCE_ATTR);
+            return last == null ? null : last.toString();
+        }
+        return null;
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static class Stats {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile double latencyMs = INITIAL_LATENCY_MS;
+        volatile long ejectedUntil = 0;
+
+        double score() {
+            return (Math.max(inFlight.get(), 0) + 1) * latencyMs;
+        }
+    }
+}
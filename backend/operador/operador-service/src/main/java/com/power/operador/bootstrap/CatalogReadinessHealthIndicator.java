@@ -0,0 +1,42 @@
+package com.power.operador.bootstrap;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Indica si la carga inicial del catálogo terminó. Incluido en el grupo
+ * "readiness" para no recibir tráfico mientras la tabla está a medio llenar.
+ */
+@Component
+public class CatalogReadinessHealthIndicator implements HealthIndicator {
+
+    private volatile boolean ready = false;
+    private volatile long readyAfterMs = -1;
+    private volatile String lastError;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void markFailed(String error) {
+        lastError = error;
+    }
+
+    void markReady() {
+        readyAfterMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        lastError = null;
+        ready = true;
+        System.out.println("⏱️ Catálogo listo " + readyAfterMs + " ms después del arranque de la JVM.");
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = ready ? Health.up() : Health.outOfService();
+        if (ready) builder.withDetail("readyAfterMs", readyAfterMs);
+        if (lastError != null) builder.withDetail("lastError", lastError);
+        return builder.build();
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -17,20 +18,51 @@ import java.util.Map;
 public class DataLoader implements CommandLineRunner {
 
     private final ProductoRepository repo;
+    private final CatalogReadinessHealthIndicator readiness;
     private final ObjectMapper mapper = new ObjectMapper();
 
-    public DataLoader(ProductoRepository repo) {
+    public DataLoader(ProductoRepository repo, CatalogReadinessHealthIndicator readiness) {
         this.repo = repo;
+        this.readiness = readiness;
     }
 
     @Override
-    public void run(String... args) throws Exception {
+    public void run(String... args) {
+        // la carga corre aparte para no bloquear el arranque; readiness se activa al terminar
+        Thread t = new Thread(this::loadSafely, "catalog-bootstrap");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void loadSafely() {
+        long backoff = 1000;
+        while (true) {
+            try {
+                load();
+                readiness.markReady();
+                return;
+            } catch (Exception e) {
+                readiness.markFailed(e.getMessage());
+                System.err.println("❌ Error cargando productos, reintento en " + backoff + " ms: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(backoff * 2, 30000);
+        }
+    }
+
+    private void load() throws Exception {
         if (repo.count() > 0) return; // ya hay datos
 
         // Lee el JSON como List<Map> para poder adaptar nombres de campos distintos
         InputStream is = new ClassPathResource("data/productos.json").getInputStream();
         List<Map<String, Object>> raw = mapper.readValue(is, new TypeReference<>() {});
 
+        List<Producto> productos = new ArrayList<>(raw.size());
         for (Map<String, Object> m : raw) {
             Producto p = new Producto();
 
@@ -55,8 +87,9 @@ public class DataLoader implements CommandLineRunner {
                 p.setPrecio(new BigDecimal("0.00"));
             }
 
-            repo.save(p);
+            productos.add(p);
         }
+        repo.saveAll(productos); // una sola transacción en vez de una por producto
         System.out.println("📦 Productos cargados en MySQL: " + repo.count());
     }
 
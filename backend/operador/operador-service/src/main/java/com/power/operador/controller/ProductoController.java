@@ -2,6 +2,10 @@ package com.power.operador.controller;
 
 import com.power.operador.repo.ProductoRepository;
 import com.power.operador.model.Producto;
+import com.power.operador.service.CatalogService;
+import com.power.operador.service.CatalogSnapshot;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -11,17 +15,29 @@ import java.util.List;
 public class ProductoController {
 
     private final ProductoRepository repo;
+    private final CatalogService catalog;
 
-    public ProductoController(ProductoRepository repo) {
+    public ProductoController(ProductoRepository repo, CatalogService catalog) {
         this.repo = repo;
+        this.catalog = catalog;
     }
 
+    /**
+     * Listado completo con ETag/Last-Modified: si el cliente manda If-None-Match
+     * con el ETag vigente, Spring responde 304 sin cuerpo.
+     */
     @GetMapping
-    public List<Producto> listar(@RequestParam(required = false) String categoria) {
+    public ResponseEntity<List<Producto>> listar(@RequestParam(required = false) String categoria) {
         if (categoria != null && !categoria.isBlank()) {
-            return repo.findByCategoriaIgnoreCaseOrSubcategoriaIgnoreCase(categoria, categoria);
+            return ResponseEntity.ok(repo.findByCategoriaIgnoreCaseOrSubcategoriaIgnoreCase(categoria, categoria));
         }
-        return repo.findAll();
+        CatalogSnapshot snapshot = catalog.snapshot();
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        // Last-Modified sale de la base, así todas las réplicas mandan el mismo
+        if (snapshot.stamp().lastModified() != null) ok.lastModified(snapshot.stamp().lastModified());
+        return ok.body(snapshot.productos());
     }
 
     @GetMapping("/{id}")
@@ -2,6 +2,7 @@ package com.power.operador.model;
 
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @Entity
 @Table(name = "productos")
@@ -22,6 +23,11 @@ public class Producto {
 
     private String imagen;
 
+    // lo mantiene MySQL (también ante UPDATEs directos); sólo se usa para la huella del catálogo
+    @Column(name = "actualizado_en", insertable = false, updatable = false,
+            columnDefinition = "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)")
+    private Instant actualizadoEn;
+
     // getters y setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -1,11 +1,16 @@
 package com.power.operador.repo;
 
 import com.power.operador.model.Producto;
+import com.power.operador.service.CatalogStamp;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
     List<Producto> findByCategoriaIgnoreCase(String categoria);
     List<Producto> findByCategoriaIgnoreCaseOrSubcategoriaIgnoreCase(String c1, String c2);
+
+    @Query("select new com.power.operador.service.CatalogStamp(count(p), max(p.actualizadoEn)) from Producto p")
+    CatalogStamp stamp();
 }
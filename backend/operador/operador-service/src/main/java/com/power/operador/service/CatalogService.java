@@ -0,0 +1,61 @@
+package com.power.operador.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.power.operador.model.Producto;
+import com.power.operador.repo.ProductoRepository;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 📚 Catálogo completo cacheado por huella ({@link CatalogStamp}).
+ *
+ * En cada request se consulta la huella en la base (count + max(actualizado_en), una
+ * sola fila); si no cambió, el listado se sirve desde memoria y con el mismo ETag,
+ * así el Buscador puede preguntar con If-None-Match y recibir un 304. Como la huella
+ * sale de la base, ve también los cambios hechos por otra réplica o a mano en MySQL.
+ * El ETag es un digest SHA-256 del contenido, por eso coincide entre réplicas y reinicios.
+ */
+@Service
+public class CatalogService {
+
+    private final ProductoRepository repo;
+    private final ObjectMapper mapper;
+
+    private volatile CatalogSnapshot cached;
+
+    public CatalogService(ProductoRepository repo, ObjectMapper mapper) {
+        this.repo = repo;
+        this.mapper = mapper;
+    }
+
+    public CatalogSnapshot snapshot() {
+        // la huella se lee antes que los datos: si algo cambia en el medio, el próximo request recarga
+        CatalogStamp stamp = repo.stamp();
+        CatalogSnapshot s = cached;
+        if (s != null && s.stamp().equals(stamp)) return s;
+
+        synchronized (this) {
+            s = cached;
+            if (s != null && s.stamp().equals(stamp)) return s;
+            // orden fijo para que el digest no dependa del orden que devuelva la base
+            List<Producto> productos = List.copyOf(repo.findAll(Sort.by("id")));
+            s = new CatalogSnapshot(stamp, etag(productos), productos);
+            cached = s;
+            return s;
+        }
+    }
+
+    private String etag(List<Producto> productos) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(mapper.writeValueAsBytes(productos));
+            // débil: el mismo contenido puede salir en distintas representaciones
+            return "W/\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo calcular el ETag del catálogo", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.power.operador.service;
+
+import com.power.operador.model.Producto;
+
+import java.util.List;
+
+/**
+ * Foto del catálogo completo para una huella dada, con su ETag (digest del contenido).
+ */
+public record CatalogSnapshot(CatalogStamp stamp, String etag, List<Producto> productos) {
+}
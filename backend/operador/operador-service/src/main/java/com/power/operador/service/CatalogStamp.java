@@ -0,0 +1,13 @@
+package com.power.operador.service;
+
+import java.time.Instant;
+
+/**
+ * Huella barata del catálogo, leída de la base: cantidad de productos y la última
+ * modificación (columna actualizado_en, que mantiene MySQL). Cambia con cualquier
+ * alta, baja o edición, venga de esta réplica, de otra o de un UPDATE directo.
+ *
+ * @param lastModified null si la tabla está vacía
+ */
+public record CatalogStamp(Long count, Instant lastModified) {
+}
@@ -0,0 +1,68 @@
+package com.power.operador.controller;
+
+import com.power.operador.model.Producto;
+import com.power.operador.repo.ProductoRepository;
+import com.power.operador.service.CatalogService;
+import com.power.operador.service.CatalogSnapshot;
+import com.power.operador.service.CatalogStamp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProductoController.class)
+class ProductoControllerTest {
+
+    private static final String ETAG = "W/\"0123456789abcdef0123456789abcdef\"";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private CatalogService catalog;
+
+    @MockitoBean
+    private ProductoRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto();
+        p.setId(1L);
+        p.setNombre("Remera");
+        CatalogStamp stamp = new CatalogStamp(1L, Instant.parse("2025-01-01T00:00:00Z"));
+        when(catalog.snapshot()).thenReturn(new CatalogSnapshot(stamp, ETAG, List.of(p)));
+    }
+
+    @Test
+    void listarDevuelveEtagYLastModified() throws Exception {
+        mvc.perform(get("/productos"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(jsonPath("$[0].nombre").value("Remera"));
+    }
+
+    @Test
+    void listarConIfNoneMatchVigenteDevuelve304() throws Exception {
+        mvc.perform(get("/productos").header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void listarConEtagViejoDevuelveElCatalogo() throws Exception {
+        mvc.perform(get("/productos").header(HttpHeaders.IF_NONE_MATCH, "W/\"viejo\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1));
+    }
+}